@@ -1,16 +1,20 @@
 package org.jenkinsci.plugins.github_branch_source;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Util;
 import hudson.model.TaskListener;
 import hudson.util.LogTaskListener;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.plugins.github.config.GitHubServerConfig;
 import org.kohsuke.github.GHRateLimit;
@@ -91,6 +95,105 @@ public enum ApiRateLimitChecker {
             };
         }
     },
+    /**
+     * Share the API budget of each credential between all the threads using it, serving requests on
+     * behalf of events, builds and status notifications first. Requests which turn out not to consume
+     * quota, answered from a cache or with {@code 304 Not Modified}, give their share back.
+     */
+    ThrottleShared(Messages.ApiRateLimitChecker_ThrottleShared()) {
+        @Override
+        public LocalChecker getChecker(@NonNull TaskListener listener, String apiUrl) {
+            return new LocalChecker(listener) {
+                /** When the reservation made for the current request is due, if there is one. */
+                private long reservation = Long.MIN_VALUE;
+
+                /** The budget the current request reserved from, if it did. */
+                @CheckForNull
+                private SharedBudget reserved;
+
+                @Override
+                void refund() {
+                    if (reserved != null) {
+                        reserved.refund(System.currentTimeMillis());
+                        reserved = null;
+                    }
+                }
+
+                @Override
+                long checkRateLimitImpl(@NonNull GHRateLimit.Record rateLimit, long count, long now)
+                        throws InterruptedException {
+                    if (count == 0) {
+                        reserved = null;
+                    }
+                    if (count > 0 && reservation != Long.MIN_VALUE) {
+                        // woken up for the slot reserved by the previous check of this request
+                        long due = reservation;
+                        reservation = Long.MIN_VALUE;
+                        if (due <= now) {
+                            return now;
+                        }
+                    }
+                    // the buffer is how much we want to avoid using to cover unplanned over-use
+                    int buffer = calculateBuffer(rateLimit.getLimit());
+                    if (rateLimit.getRemaining() < buffer) {
+                        // nothing we can do, we have burned into our minimum buffer, wait for reset
+                        writeLog("Jenkins is sharing the GitHub API rate limit between all the requests using"
+                                + " these credentials. To configure a different rate limiting strategy, go to"
+                                + " \"GitHub API usage\" under \"Configure System\" in the Jenkins settings.");
+                        return calculateExpirationWhenBufferExceeded(rateLimit, now, buffer);
+                    }
+                    SharedBudget budget = SharedBudget.of(StringUtils.defaultIfBlank(getBudgetKey(), apiUrl));
+                    long due = budget.reserve(rateLimit, buffer, now);
+                    reserved = budget;
+                    if (getPriority() != Priority.BACKGROUND || due <= now) {
+                        // high priority requests consume the budget without waiting for it
+                        return now;
+                    }
+                    reservation = due;
+                    if (due - now > SHARED_BUDGET_LOG_THRESHOLD_MILLIS) {
+                        writeLog(String.format(
+                                "Jenkins-Imposed API Limiter: Sharing the %d remaining requests of the current quota"
+                                        + " with other requests using the same credentials. Next quota of %d in %s."
+                                        + " Sleeping for %s.",
+                                rateLimit.getRemaining(),
+                                rateLimit.getLimit(),
+                                Util.getTimeSpanString(rateLimit.getResetDate().getTime() - now),
+                                Util.getTimeSpanString(due - now)));
+                    }
+                    return due;
+                }
+            };
+        }
+    },
+
+    /**
+     * Hold whole scans back until the remaining quota covers their expected cost, learned from their
+     * previous runs, rather than slowing down the requests of scans in progress.
+     *
+     * @see ScanCostModel
+     */
+    ThrottlePredictive(Messages.ApiRateLimitChecker_ThrottlePredictive()) {
+        @Override
+        public LocalChecker getChecker(@NonNull TaskListener listener, String apiUrl) {
+            return new LocalChecker(listener) {
+                @Override
+                long checkRateLimitImpl(@NonNull GHRateLimit.Record rateLimit, long count, long now)
+                        throws InterruptedException {
+                    // scans only start when the quota covers them, the requests are only stopped from
+                    // using the buffer
+                    int buffer = calculateBuffer(rateLimit.getLimit());
+                    if (rateLimit.getRemaining() >= buffer) {
+                        return now;
+                    }
+                    writeLog("Jenkins is scheduling scans according to the API usage of their previous runs. "
+                            + "To configure a different rate limiting strategy, go to \"GitHub API usage\" under"
+                            + " \"Configure System\" in the Jenkins settings.");
+                    return calculateExpirationWhenBufferExceeded(rateLimit, now, buffer);
+                }
+            };
+        }
+    },
+
     /**
      * Ignore GitHub API Rate limit. Useful for GitHub Enterprise instances that might not have a
      * limit set up.
@@ -130,12 +233,21 @@ public enum ApiRateLimitChecker {
      */
     private static final ThreadLocal<LocalChecker> localRateLimitChecker = new ThreadLocal<>();
 
+    /** The shared budgets of {@link #ThrottleShared}, by endpoint and credentials. */
+    private static final Map<String, SharedBudget> budgets = new ConcurrentHashMap<>();
+
+    /** Waits for the shared budget shorter than this are not worth reporting. */
+    private static final long SHARED_BUDGET_LOG_THRESHOLD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
     private static final double MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
     private static Random ENTROPY = new Random();
     private static int EXPIRATION_WAIT_MILLIS = 65536; // approx 1 min
     // A random straw poll of users concluded that 3 minutes without any visible progress in the logs
     // is the point after which people believe that the process is dead.
     private static long NOTIFICATION_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+    // Scans that would wait longer than this for the rate limit are rescheduled instead, 0 to always wait.
+    private static long MAX_BLOCKING_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(Math.max(
+            0, SystemProperties.getInteger(ApiRateLimitChecker.class.getName() + ".maxBlockingWaitSeconds", 0)));
 
     static void setEntropy(Random random) {
         ENTROPY = random;
@@ -149,6 +261,10 @@ public enum ApiRateLimitChecker {
         NOTIFICATION_WAIT_MILLIS = notificationWaitMillis;
     }
 
+    static void setMaxBlockingWaitMillis(long maxBlockingWaitMillis) {
+        MAX_BLOCKING_WAIT_MILLIS = maxBlockingWaitMillis;
+    }
+
     private String displayName;
 
     ApiRateLimitChecker(String displayName) {
@@ -160,15 +276,73 @@ public enum ApiRateLimitChecker {
     }
 
     public static void configureThreadLocalChecker(@NonNull TaskListener listener, @NonNull GitHub gitHub) {
+        configureThreadLocalChecker(listener, gitHub, Priority.BACKGROUND);
+    }
+
+    static void configureThreadLocalChecker(
+            @NonNull TaskListener listener, @NonNull GitHub gitHub, @NonNull Priority priority) {
         configureThreadLocalChecker(listener, gitHub.getApiUrl());
+        localRateLimitChecker.get().setPriority(priority);
     }
 
     private static void configureThreadLocalChecker(TaskListener listener, String apiUrl) {
         LocalChecker checker =
                 GitHubConfiguration.get().getApiRateLimitChecker().getChecker(listener, apiUrl);
+        LocalChecker previous = localRateLimitChecker.get();
+        if (previous != null) {
+            // the requests of nested calls count towards the scan in progress
+            checker.setScan(previous.getScan());
+            checker.deferrable = previous.deferrable;
+        }
         localRateLimitChecker.set(checker);
     }
 
+    /**
+     * Sets whether the background requests of this thread defer the scan in progress rather than wait
+     * a long time for the rate limit.
+     *
+     * <p>When enabled, a wait longer than the {@code maxBlockingWaitSeconds} system property throws a
+     * {@link RateLimitDeferredException}, which the scan has to turn into a rescheduled scan. Scans
+     * nested in an organization scan, which {@link #isDeferringLongWaits()} tells, leave it as the
+     * organization scan set it, and let the exception reach the organization scan, which reschedules
+     * itself. The rate limit checker of the thread must
+     * have been configured.
+     *
+     * @param defer whether long waits defer the scan.
+     * @return the previous setting, to restore when done.
+     */
+    static boolean setDeferLongWaits(boolean defer) {
+        LocalChecker checker = getLocalChecker();
+        if (checker == null) {
+            return false;
+        }
+        boolean previous = checker.deferrable;
+        checker.deferrable = defer;
+        return previous;
+    }
+
+    /**
+     * Tells whether the background requests of this thread defer the scan in progress, i.e. whether a
+     * scan that reschedules itself, such as an organization scan, is running on this thread.
+     *
+     * @return {@code true} if long waits defer the scan in progress.
+     */
+    static boolean isDeferringLongWaits() {
+        LocalChecker checker = getLocalChecker();
+        return checker != null && checker.deferrable;
+    }
+
+    /**
+     * Returns the priority of the requests of this thread.
+     *
+     * @return the priority the checker of this thread was configured with.
+     */
+    @NonNull
+    static Priority getThreadPriority() {
+        LocalChecker checker = getLocalChecker();
+        return checker == null ? Priority.BACKGROUND : checker.priority;
+    }
+
     /**
      * Verify a GitHub connection
      *
@@ -220,6 +394,18 @@ public enum ApiRateLimitChecker {
     }
 
     static final class RateLimitCheckerAdapter extends RateLimitChecker {
+        /** Identifies the endpoint and credentials of the connection, {@code null} if unknown. */
+        @CheckForNull
+        private final String budgetKey;
+
+        RateLimitCheckerAdapter() {
+            this(null);
+        }
+
+        RateLimitCheckerAdapter(@CheckForNull String budgetKey) {
+            this.budgetKey = budgetKey;
+        }
+
         @Override
         protected boolean checkRateLimit(GHRateLimit.Record rateLimitRecord, long count) throws InterruptedException {
             LocalChecker checker = getLocalChecker();
@@ -241,16 +427,111 @@ public enum ApiRateLimitChecker {
                         + apiUrl
                         + "'.");
             }
+            checker.budgetKey = budgetKey;
             return checker.checkRateLimit(rateLimitRecord, count);
         }
     }
 
+    /**
+     * The priority of API requests, used by {@link #ThrottleShared} and {@link ApiRequestScheduler},
+     * highest first.
+     */
+    enum Priority {
+        /** Requests on behalf of events and builds. */
+        INTERACTIVE,
+        /** Commit status notifications. */
+        NOTIFICATION,
+        /** Background requests, such as those of full scans. */
+        BACKGROUND
+    }
+
+    /**
+     * A token bucket shared by all the requests using the same credentials.
+     *
+     * <p>The bucket refills at the rate that spends the quota remaining above the buffer evenly until
+     * the next reset, and holds up to a burst of requests. Each request reserves the next slot, so that
+     * waiting threads are served in the order they arrived, whatever their number.
+     */
+    private static final class SharedBudget {
+        private double storedTokens;
+        private long nextFree = Long.MIN_VALUE;
+        private double tokensPerMilli;
+        private int burst;
+
+        @NonNull
+        static SharedBudget of(@NonNull String key) {
+            return budgets.computeIfAbsent(key, k -> new SharedBudget());
+        }
+
+        /**
+         * Reserves a request.
+         *
+         * @param rateLimit the current rate limit.
+         * @param buffer the requests to keep for unplanned use.
+         * @param now the current time.
+         * @return when the request may be made.
+         */
+        synchronized long reserve(@NonNull GHRateLimit.Record rateLimit, int buffer, long now) {
+            long resetMillis = rateLimit.getResetDate().getTime() - now;
+            if (resetMillis <= 0) {
+                // the quota is about to be renewed
+                storedTokens = 0;
+                nextFree = now;
+                return now;
+            }
+            tokensPerMilli = (double) Math.max(1, rateLimit.getRemaining() - buffer) / resetMillis;
+            burst = calculateNormalizedBurst(rateLimit.getLimit());
+            if (nextFree < now) {
+                storedTokens = nextFree == Long.MIN_VALUE
+                        ? burst
+                        : Math.min(burst, storedTokens + (now - nextFree) * tokensPerMilli);
+                nextFree = now;
+            }
+            long due = nextFree;
+            if (storedTokens >= 1) {
+                storedTokens -= 1;
+            } else {
+                nextFree += (long) Math.ceil((1 - storedTokens) / tokensPerMilli);
+                storedTokens = 0;
+            }
+            return due;
+        }
+
+        /**
+         * Gives back a request reserved but which did not consume quota.
+         *
+         * @param now the current time.
+         */
+        synchronized void refund(long now) {
+            if (nextFree > now && tokensPerMilli > 0) {
+                // the requests reserving next may go sooner
+                nextFree = Math.max(now, nextFree - (long) Math.ceil(1 / tokensPerMilli));
+            } else {
+                storedTokens = Math.min(burst, storedTokens + 1);
+            }
+        }
+    }
+
     abstract static class LocalChecker {
         @NonNull
         private final TaskListener listener;
 
         private long expiration;
 
+        @NonNull
+        private Priority priority = Priority.BACKGROUND;
+
+        /** Identifies the connection of the request being checked, {@code null} if unknown. */
+        @CheckForNull
+        private String budgetKey;
+
+        /** The scan the requests of this thread count towards, {@code null} if none. */
+        @CheckForNull
+        private ScanCostModel.Scan scan;
+
+        /** Whether long waits defer the scan in progress rather than block the thread. */
+        private boolean deferrable;
+
         LocalChecker(@NonNull TaskListener listener) {
             this.listener = Objects.requireNonNull(listener);
             resetExpiration();
@@ -271,6 +552,67 @@ public enum ApiRateLimitChecker {
             return waitUntilRateLimit(now, newExpiration, count);
         }
 
+        @NonNull
+        Priority getPriority() {
+            return priority;
+        }
+
+        void setPriority(@NonNull Priority priority) {
+            this.priority = priority;
+        }
+
+        @CheckForNull
+        String getBudgetKey() {
+            return budgetKey;
+        }
+
+        @CheckForNull
+        ScanCostModel.Scan getScan() {
+            return scan;
+        }
+
+        void setScan(@CheckForNull ScanCostModel.Scan scan) {
+            this.scan = scan;
+        }
+
+        /**
+         * Charges an answered request. Only the requests which consumed quota count towards the scan in
+         * progress, and the budget reserved for the others is given back.
+         *
+         * @param outcome how the request was answered.
+         * @see RequestAccounting
+         */
+        void charge(@NonNull RequestAccounting.Outcome outcome) {
+            if (outcome != RequestAccounting.Outcome.MISS) {
+                refund();
+                return;
+            }
+            if (scan != null) {
+                scan.requested();
+            }
+            RateLimitTelemetry.requested(budgetKey, priority, scan == null ? null : scan.getJobName());
+        }
+
+        /** Gives back the budget reserved for the current request, by the strategies which reserve any. */
+        void refund() {}
+
+        /**
+         * Gives the thread back instead of waiting, if the wait is too long and the scan in progress can
+         * be deferred.
+         *
+         * @param resumeAt when the wait would end.
+         * @param now the current time.
+         * @throws RateLimitDeferredException if the scan should be deferred until {@code resumeAt}.
+         */
+        void checkDeferral(long resumeAt, long now) {
+            if (deferrable
+                    && priority == Priority.BACKGROUND
+                    && MAX_BLOCKING_WAIT_MILLIS > 0
+                    && resumeAt - now > MAX_BLOCKING_WAIT_MILLIS) {
+                throw new RateLimitDeferredException(resumeAt);
+            }
+        }
+
         // internal for testing
         abstract long checkRateLimitImpl(@NonNull GHRateLimit.Record rateLimit, long count, long now)
                 throws InterruptedException;
@@ -320,6 +662,7 @@ public enum ApiRateLimitChecker {
                 if (Thread.interrupted()) {
                     throw new InterruptedException();
                 }
+                checkDeferral(expiration, now);
                 long sleep = Math.min(expiration, nextNotify) - now;
                 if (sleep > 0) {
                     Thread.sleep(sleep);
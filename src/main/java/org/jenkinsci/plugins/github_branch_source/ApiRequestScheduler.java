@@ -0,0 +1,345 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Admits the API requests of a connection by priority.
+ *
+ * <p>Scans, events and commit status notifications share the connection of their credentials, and
+ * so its rate limit. When the remaining quota gets low, a long running organization scan could use
+ * it up while developers wait for their commit statuses. When the {@link
+ * ApiRateLimitChecker#ThrottleShared} strategy is selected, this interceptor keeps part of the
+ * quota for the higher {@link ApiRateLimitChecker.Priority priorities}: background requests wait
+ * for the next reset once the remaining quota falls to {@link #BACKGROUND_RESERVE_PERCENT} percent
+ * of the limit, notifications once it falls to half of that, and only requests on behalf of events
+ * and builds may use the rest. Waiting requests are admitted highest priority first, in arrival
+ * order within a priority.
+ *
+ * <p>The priority of a request is the one of the rate limit checker of the calling thread.
+ */
+final class ApiRequestScheduler implements Interceptor {
+
+    /** The share of the limit background requests leave to the other priorities. */
+    private static final int BACKGROUND_RESERVE_PERCENT = Math.min(
+            50,
+            Math.max(
+                    0,
+                    SystemProperties.getInteger(
+                            ApiRequestScheduler.class.getName() + ".backgroundReservePercent", 10)));
+
+    /** How long to wait at most before checking the quota again. */
+    private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<ApiRateLimitChecker.Priority, PriorityMetrics> metrics = createMetrics();
+
+    /** The limit of the core quota, {@code -1} until a response reported it. */
+    private int limit = -1;
+
+    /** The remaining core quota, less the requests admitted since it was reported. */
+    private int remaining = -1;
+
+    /** When the core quota is renewed. */
+    private long resetMillis;
+
+    /** The waiting requests of each priority, in arrival order. */
+    private final Map<ApiRateLimitChecker.Priority, Deque<Object>> waiting = createQueues();
+
+    @NonNull
+    private static Map<ApiRateLimitChecker.Priority, PriorityMetrics> createMetrics() {
+        Map<ApiRateLimitChecker.Priority, PriorityMetrics> result = new EnumMap<>(ApiRateLimitChecker.Priority.class);
+        for (ApiRateLimitChecker.Priority priority : ApiRateLimitChecker.Priority.values()) {
+            result.put(priority, new PriorityMetrics());
+        }
+        return result;
+    }
+
+    @NonNull
+    private static Map<ApiRateLimitChecker.Priority, Deque<Object>> createQueues() {
+        Map<ApiRateLimitChecker.Priority, Deque<Object>> result = new EnumMap<>(ApiRateLimitChecker.Priority.class);
+        for (ApiRateLimitChecker.Priority priority : ApiRateLimitChecker.Priority.values()) {
+            result.put(priority, new ArrayDeque<>());
+        }
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean core = isCore(request);
+        boolean admitted = core && isActive();
+        if (admitted) {
+            admit(ApiRateLimitChecker.getThreadPriority());
+        }
+        Response response = chain.proceed(request);
+        if (response.cacheResponse() != null && response.networkResponse() == null) {
+            // answered by the disk cache, with the rate limit headers of when it was cached
+            if (admitted) {
+                refund();
+            }
+        } else if (core) {
+            update(response);
+        }
+        return response;
+    }
+
+    /** GraphQL and search requests have quotas of their own. */
+    private static boolean isCore(@NonNull Request request) {
+        String path = request.url().encodedPath();
+        return !path.endsWith("/graphql") && !path.contains("/search/");
+    }
+
+    private static boolean isActive() {
+        return BACKGROUND_RESERVE_PERCENT > 0
+                && Jenkins.getInstanceOrNull() != null
+                && GitHubConfiguration.get().getApiRateLimitChecker() == ApiRateLimitChecker.ThrottleShared;
+    }
+
+    void admit(@NonNull ApiRateLimitChecker.Priority priority) throws InterruptedIOException {
+        PriorityMetrics stats = metrics.get(priority);
+        Deque<Object> queue = waiting.get(priority);
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (queue.isEmpty() && allows(priority)) {
+                consume();
+                stats.admitted(0);
+                return;
+            }
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            stats.waiting.incrementAndGet();
+            boolean logged = false;
+            try {
+                while (queue.peekFirst() != ticket || !allows(priority)) {
+                    long now = System.currentTimeMillis();
+                    if (resetMillis <= now) {
+                        // the quota has been renewed, until a response tells otherwise
+                        remaining = limit;
+                        resetMillis = now + MAX_WAIT_MILLIS;
+                        notifyAll();
+                        continue;
+                    }
+                    ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+                    if (checker != null) {
+                        checker.checkDeferral(resetMillis, now);
+                    }
+                    if (!logged && queue.peekFirst() == ticket) {
+                        logged = true;
+                        log(priority, resetMillis - now);
+                    }
+                    wait(Math.min(MAX_WAIT_MILLIS, resetMillis - now));
+                }
+                consume();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the GitHub API rate limit");
+            } finally {
+                queue.remove(ticket);
+                stats.waiting.decrementAndGet();
+                notifyAll();
+            }
+        }
+        stats.admitted(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks whether the quota allows a request of a priority, given the requests waiting.
+     *
+     * @param priority the priority.
+     * @return {@code true} if the request may proceed.
+     */
+    synchronized boolean allows(@NonNull ApiRateLimitChecker.Priority priority) {
+        for (Map.Entry<ApiRateLimitChecker.Priority, Deque<Object>> entry : waiting.entrySet()) {
+            if (entry.getKey().compareTo(priority) < 0 && !entry.getValue().isEmpty()) {
+                // higher priority requests go first
+                return false;
+            }
+        }
+        if (remaining < 0) {
+            // nothing known about the quota yet
+            return true;
+        }
+        switch (priority) {
+            case BACKGROUND:
+                return remaining > limit * BACKGROUND_RESERVE_PERCENT / 100;
+            case NOTIFICATION:
+                return remaining > limit * BACKGROUND_RESERVE_PERCENT / 200;
+            default:
+                return remaining > 0;
+        }
+    }
+
+    /** Counts an admitted request until the next response reports the actual quota. */
+    private void consume() {
+        if (remaining > 0) {
+            remaining--;
+        }
+    }
+
+    /** Gives back a request admitted but which did not consume quota. */
+    private synchronized void refund() {
+        if (remaining >= 0 && remaining < limit) {
+            remaining++;
+            notifyAll();
+        }
+    }
+
+    synchronized void update(@NonNull Response response) {
+        String resource = response.header("X-RateLimit-Resource");
+        if (resource != null && !"core".equals(resource)) {
+            return;
+        }
+        try {
+            String limit = response.header("X-RateLimit-Limit");
+            String remaining = response.header("X-RateLimit-Remaining");
+            String reset = response.header("X-RateLimit-Reset");
+            if (limit == null || remaining == null || reset == null) {
+                return;
+            }
+            this.limit = Integer.parseInt(limit);
+            this.remaining = Integer.parseInt(remaining);
+            this.resetMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(reset));
+        } catch (NumberFormatException e) {
+            // keep what we knew
+            return;
+        }
+        notifyAll();
+    }
+
+    private void log(@NonNull ApiRateLimitChecker.Priority priority, long waitMillis) {
+        ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+        if (checker != null) {
+            checker.writeLog(String.format(
+                    "Jenkins-Imposed API Limiter: Current quota for Github API usage has %d remaining, kept for"
+                            + " requests with a higher priority than %s. Next quota of %d in %s.",
+                    remaining, priority, limit, Util.getTimeSpanString(waitMillis)));
+        }
+    }
+
+    /**
+     * Returns the statistics of the requests of each priority.
+     *
+     * @return the statistics, highest priority first.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public static List<Statistics> getStatistics() {
+        List<Statistics> result = new ArrayList<>();
+        for (Map.Entry<ApiRateLimitChecker.Priority, PriorityMetrics> entry : metrics.entrySet()) {
+            result.add(new Statistics(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    /** Counts the requests of a priority, for all the connections. */
+    private static final class PriorityMetrics {
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder delayed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void admitted(long nanos) {
+            admitted.increment();
+            if (nanos > 0) {
+                delayed.increment();
+                waitNanos.add(nanos);
+                maxWaitNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+    }
+
+    /** A snapshot of the statistics of the requests of a priority. */
+    @Restricted(NoExternalUse.class)
+    public static final class Statistics {
+        @NonNull
+        private final ApiRateLimitChecker.Priority priority;
+
+        private final int queueDepth;
+        private final long admittedCount;
+        private final long delayedCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private Statistics(@NonNull ApiRateLimitChecker.Priority priority, @NonNull PriorityMetrics metrics) {
+            this.priority = priority;
+            this.queueDepth = metrics.waiting.get();
+            this.admittedCount = metrics.admitted.sum();
+            this.delayedCount = metrics.delayed.sum();
+            this.totalWaitNanos = metrics.waitNanos.sum();
+            this.maxWaitNanos = metrics.maxWaitNanos.get();
+        }
+
+        @NonNull
+        public String getPriority() {
+            return priority.name();
+        }
+
+        /**
+         * Returns the number of requests waiting for quota.
+         *
+         * @return the number of waiting requests.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getAdmittedCount() {
+            return admittedCount;
+        }
+
+        /**
+         * Returns the number of requests that had to wait before being admitted.
+         *
+         * @return the number of delayed requests.
+         */
+        public long getDelayedCount() {
+            return delayedCount;
+        }
+
+        /**
+         * Returns the average wait of the delayed requests.
+         *
+         * @return the average wait in milliseconds.
+         */
+        public long getAverageWaitMillis() {
+            return delayedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / delayedCount);
+        }
+
+        public long getMaxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d waiting, %d admitted, %d delayed (%d ms average, %d ms max)",
+                    priority,
+                    queueDepth,
+                    admittedCount,
+                    delayedCount,
+                    getAverageWaitMillis(),
+                    getMaxWaitMillis());
+        }
+    }
+}
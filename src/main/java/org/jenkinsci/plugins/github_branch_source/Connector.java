@@ -35,6 +35,10 @@ import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -48,23 +52,28 @@ import hudson.model.TaskListener;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
-import io.jenkins.plugins.okhttp.api.JenkinsOkHttpClient;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -72,14 +81,24 @@ import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMSourceOwner;
 import jenkins.util.SystemProperties;
 import okhttp3.Cache;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.github.config.GitHubServerConfig;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.github.AbuseLimitHandler;
 import org.kohsuke.github.GHAppInstallationToken;
+import org.kohsuke.github.GHRateLimit;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
 import org.kohsuke.github.RateLimitHandler;
+import org.kohsuke.github.authorization.AuthorizationProvider;
 import org.kohsuke.github.authorization.ImmutableAuthorizationProvider;
 import org.kohsuke.github.extras.okhttp3.OkHttpConnector;
 
@@ -91,13 +110,37 @@ public class Connector {
     private static final Map<ConnectionId, GitHubConnection> connections = new ConcurrentHashMap<>();
     private static final Map<GitHub, ConnectionId> reverseLookup = new ConcurrentHashMap<>();
 
-    private static final Map<TaskListener, Map<GitHub, Void>> checked = new WeakHashMap<>();
+    /** The connections already checked for each listener, weakly referenced as listeners are never released. */
+    private static final Map<TaskListener, Map<GitHub, Boolean>> checked =
+            Caffeine.newBuilder().weakKeys().<TaskListener, Map<GitHub, Boolean>>build().asMap();
     private static final long API_URL_REVALIDATE_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
     private static final Random ENTROPY = new Random();
     private static final String SALT = Long.toHexString(ENTROPY.nextLong());
-    private static final OkHttpClient baseClient =
-            JenkinsOkHttpClient.newClientBuilder(new OkHttpClient()).build();
+    private static final MediaType GRAPHQL_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+    private static final ObjectMapper GRAPHQL_MAPPER = new ObjectMapper();
+
+    /**
+     * How long to serve hot responses such as repository details from memory, {@code 0} disables
+     * the in-memory cache.
+     *
+     * @see MemoryResponseCache
+     */
+    private static final int MEMORY_CACHE_SECONDS =
+            Math.max(0, SystemProperties.getInteger(Connector.class.getName() + ".memoryCacheSeconds", 0));
+
+    /** How many responses each connection keeps in memory. */
+    private static final int MEMORY_CACHE_ENTRIES =
+            Math.max(1, SystemProperties.getInteger(Connector.class.getName() + ".memoryCacheEntries", 500));
+
+    /**
+     * How many megabytes of public responses to share between the connections to an endpoint,
+     * {@code 0} disables the shared cache.
+     *
+     * @see SharedResponseCache
+     */
+    private static final int SHARED_CACHE_SIZE =
+            Math.max(0, SystemProperties.getInteger(Connector.class.getName() + ".sharedCacheSize", 0));
 
     private Connector() {
         throw new IllegalAccessError("Utility class");
@@ -408,19 +451,29 @@ public class Connector {
             try {
                 Cache cache = getCache(jenkins, apiUrl, authHash, username);
 
-                GitHubBuilder gb = createGitHubBuilder(apiUrl, cache);
+                OkHttpClient client = createClient(apiUrl, cache, connectionId.toString());
+                GitHubBuilder gb = createGitHubBuilder(apiUrl, client);
+                // requests using the same credentials share their rate limit budget
+                gb.withRateLimitChecker(new ApiRateLimitChecker.RateLimitCheckerAdapter(connectionId.toString()));
 
+                AuthorizationProvider authorizationProvider = AuthorizationProvider.ANONYMOUS;
                 if (gitHubAppCredentials != null) {
-                    gb.withAuthorizationProvider(gitHubAppCredentials.getAuthorizationProvider());
+                    authorizationProvider = gitHubAppCredentials.getAuthorizationProvider();
                 } else if (username != null && password != null) {
                     // At the time of this change this works for OAuth tokens as well.
                     // This may not continue to work in the future, as GitHub has deprecated
                     // Login/Password
                     // credentials.
-                    gb.withAuthorizationProvider(
-                            ImmutableAuthorizationProvider.fromLoginAndPassword(username, password));
+                    authorizationProvider = ImmutableAuthorizationProvider.fromLoginAndPassword(username, password);
                 }
-                return new GitHubConnection(gb.build(), cache, credentials instanceof GitHubAppCredentials);
+                gb.withAuthorizationProvider(authorizationProvider);
+                return new GitHubConnection(
+                        gb.build(),
+                        cache,
+                        credentials instanceof GitHubAppCredentials,
+                        client,
+                        authorizationProvider,
+                        credentials == null ? null : credentials.getId());
             } catch (IOException e) {
                 throw new RuntimeException(e.getMessage(), e);
             }
@@ -444,23 +497,128 @@ public class Connector {
      * @throws IOException if I/O error occurs
      */
     static GitHubBuilder createGitHubBuilder(@NonNull String apiUrl) throws IOException {
-        return createGitHubBuilder(apiUrl, null);
+        return createGitHubBuilder(apiUrl, createClient(apiUrl, null, null));
     }
 
     @NonNull
-    private static GitHubBuilder createGitHubBuilder(@NonNull String apiUrl, @CheckForNull Cache cache)
+    private static GitHubBuilder createGitHubBuilder(@NonNull String apiUrl, @NonNull OkHttpClient client)
             throws IOException {
         GitHubBuilder gb = new GitHubBuilder();
         gb.withEndpoint(apiUrl);
         gb.withRateLimitChecker(new ApiRateLimitChecker.RateLimitCheckerAdapter());
         gb.withRateLimitHandler(CUSTOMIZED);
+        gb.withAbuseLimitHandler(SECONDARY_LIMIT);
+        gb.withConnector(new OkHttpConnector(client));
+        return gb;
+    }
 
-        OkHttpClient.Builder clientBuilder = baseClient.newBuilder();
+    /**
+     * Creates the HTTP client of a connection.
+     *
+     * @param apiUrl the API endpoint.
+     * @param cache the disk cache of the connection, if any.
+     * @param connectionKey identifies the pooled connection the client is for, {@code null} if the
+     *     connection is not pooled, in which case the client does not cache responses in memory nor
+     *     share them with other connections.
+     * @return the client.
+     */
+    @NonNull
+    private static OkHttpClient createClient(
+            @NonNull String apiUrl, @CheckForNull Cache cache, @CheckForNull String connectionKey) {
+        boolean responseCaches = connectionKey != null;
+        // shares the connection pool and dispatcher of the endpoint
+        OkHttpClient.Builder clientBuilder = EndpointClient.forApiUrl(apiUrl).newBuilder();
+        if (responseCaches) {
+            // before the concurrency limit of the endpoint, so that waiting requests do not hold a permit
+            clientBuilder.interceptors().add(0, new ApiRequestScheduler());
+        }
+        if (responseCaches && MEMORY_CACHE_SECONDS > 0) {
+            // the first application interceptor, so that hits skip the scheduler, the concurrency limit of
+            // the endpoint and the disk cache as well as the network
+            clientBuilder
+                    .interceptors()
+                    .add(0, new MemoryResponseCache(Duration.ofSeconds(MEMORY_CACHE_SECONDS), MEMORY_CACHE_ENTRIES));
+        }
+        if (responseCaches && SHARED_CACHE_SIZE > 0) {
+            // a network interceptor, so that it revalidates with the credential of the connection
+            clientBuilder.addNetworkInterceptor(
+                    SharedResponseCache.forApiUrl(apiUrl, SHARED_CACHE_SIZE * 1024L * 1024L));
+        }
+        // the first application interceptor and the last network interceptor, so that requests are
+        // charged once answered, by whichever cache answered them
+        clientBuilder.interceptors().add(0, new RequestAccounting(connectionKey));
+        clientBuilder.addNetworkInterceptor(new RequestAccounting.Network());
         if (cache != null) {
             clientBuilder.cache(cache);
         }
-        gb.withConnector(new OkHttpConnector(clientBuilder.build()));
-        return gb;
+        return clientBuilder.build();
+    }
+
+    /**
+     * Executes a query against the GitHub GraphQL API using the HTTP client and authorization of a
+     * {@link GitHub} instance obtained from {@link #connect(String, StandardCredentials)}.
+     *
+     * <p>The GraphQL API has its own point based rate limit, so these requests are not routed
+     * through the {@link ApiRateLimitChecker}.
+     *
+     * @param gitHub the connection to use.
+     * @param query the GraphQL query document.
+     * @param variables the query variables.
+     * @return the {@code data} element of the response.
+     * @throws IOException if the connection is anonymous, the request fails or the response reports
+     *     errors.
+     */
+    @NonNull
+    static JsonNode executeGraphQL(
+            @NonNull GitHub gitHub, @NonNull String query, @NonNull Map<String, Object> variables)
+            throws IOException {
+        ConnectionId connectionId = reverseLookup.get(gitHub);
+        GitHubConnection record = connectionId == null ? null : connections.get(connectionId);
+        if (record == null) {
+            throw new IOException("No pooled connection for " + gitHub.getApiUrl());
+        }
+        String authorization = record.authorizationProvider.getEncodedAuthorization();
+        if (authorization == null) {
+            throw new IOException("The GitHub GraphQL API cannot be used anonymously");
+        }
+        ObjectNode payload = GRAPHQL_MAPPER.createObjectNode();
+        payload.put("query", query);
+        payload.set("variables", GRAPHQL_MAPPER.valueToTree(variables));
+        String url = graphQLUrl(gitHub.getApiUrl());
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Authorization", authorization)
+                .post(RequestBody.create(GRAPHQL_MAPPER.writeValueAsString(payload), GRAPHQL_MEDIA_TYPE))
+                .build();
+        try (Response response = record.client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("GraphQL request to " + url + " failed with HTTP status " + response.code());
+            }
+            JsonNode result = GRAPHQL_MAPPER.readTree(body.byteStream());
+            JsonNode errors = result.path("errors");
+            if (errors.isArray() && errors.size() > 0) {
+                StringBuilder message = new StringBuilder("GraphQL request to " + url + " failed:");
+                for (JsonNode error : errors) {
+                    message.append(' ').append(error.path("message").asText());
+                }
+                throw new IOException(message.toString());
+            }
+            return result.path("data");
+        }
+    }
+
+    /**
+     * Derives the GraphQL endpoint from a REST API URL, e.g. {@code https://api.github.com/graphql}
+     * or {@code https://ghe.example.com/api/graphql} for {@code https://ghe.example.com/api/v3}.
+     */
+    @NonNull
+    static String graphQLUrl(@NonNull String apiUrl) {
+        String url = StringUtils.removeEnd(apiUrl, "/");
+        if (url.endsWith("/v3")) {
+            url = StringUtils.removeEnd(url, "/v3");
+        }
+        return url + "/graphql";
     }
 
     @CheckForNull
@@ -495,6 +653,74 @@ public class Connector {
         return cache;
     }
 
+    /**
+     * Selects the credentials with the most remaining quota among interchangeable scan credentials.
+     *
+     * <p>Each of the credentials keeps its own connection, with its own cache, so that conditional
+     * requests keep being answered from the cache of the credentials that made the original request.
+     * The remaining quota of a connection is the one its last response reported, so selecting makes no
+     * API requests. Credentials that have not been used yet, or whose quota has been renewed since,
+     * are assumed to have their whole quota. Anonymous access, with its much lower quota, is never
+     * selected over pooled credentials.
+     *
+     * @param apiUri the API endpoint.
+     * @param credentials the scan credentials, {@code null} for anonymous access.
+     * @param pool the credentials which can be used in their place.
+     * @return the selected credentials.
+     * @throws IOException if a connection cannot be created.
+     */
+    @CheckForNull
+    static StandardCredentials selectScanCredentials(
+            @CheckForNull String apiUri,
+            @CheckForNull StandardCredentials credentials,
+            @NonNull List<StandardCredentials> pool)
+            throws IOException {
+        if (pool.isEmpty()) {
+            return credentials;
+        }
+        List<StandardCredentials> candidates = new ArrayList<>();
+        if (credentials != null) {
+            candidates.add(credentials);
+        }
+        candidates.addAll(pool);
+        StandardCredentials selected = credentials;
+        long selectedRemaining = Long.MIN_VALUE;
+        for (StandardCredentials candidate : candidates) {
+            GitHub gitHub = connect(apiUri, candidate);
+            try {
+                GHRateLimit.Record core = gitHub.lastRateLimit().getCore();
+                long remaining;
+                if (core instanceof GHRateLimit.UnknownLimitRecord) {
+                    remaining = Long.MAX_VALUE;
+                } else if (core.isExpired()) {
+                    remaining = core.getLimit();
+                } else {
+                    remaining = core.getRemaining();
+                }
+                if (remaining > selectedRemaining) {
+                    selected = candidate;
+                    selectedRemaining = remaining;
+                }
+            } finally {
+                release(gitHub);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Identifies the endpoint and credentials of a connection, for data only these credentials may
+     * see.
+     *
+     * @param hub the connection.
+     * @return the key, {@code null} if the connection is not pooled.
+     */
+    @CheckForNull
+    static String connectionKey(@NonNull GitHub hub) {
+        ConnectionId connectionId = reverseLookup.get(hub);
+        return connectionId == null ? null : connectionId.toString();
+    }
+
     public static void release(@CheckForNull GitHub hub) {
         if (hub == null) {
             return;
@@ -538,6 +764,31 @@ public class Connector {
         }
     };
 
+    /**
+     * Retry after a secondary rate limit, leaving the wait to the {@link SecondaryRateLimiter} of the
+     * endpoint, so that all the connections to the endpoint hold their requests rather than only this
+     * one.
+     */
+    static final AbuseLimitHandler SECONDARY_LIMIT = new AbuseLimitHandler() {
+
+        @Override
+        public void onError(IOException e, HttpURLConnection uc) throws IOException {
+            String retryAfter = uc.getHeaderField("Retry-After");
+            String message = String.format(
+                    "GitHub API secondary rate limit exceeded for %s, retrying %s",
+                    uc.getURL(),
+                    retryAfter == null
+                            ? "with exponential backoff"
+                            : "in " + Util.getTimeSpanString(SecondaryRateLimiter.parseRetryAfter(retryAfter)));
+            ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+            if (checker != null) {
+                checker.writeLog(message);
+            } else {
+                LOGGER.log(Level.INFO, message);
+            }
+        }
+    };
+
     /**
      * Alternative to {@link GitHub#isCredentialValid()} that relies on the cached user object in the
      * {@link GitHub} instance and hence reduced rate limit consumption. It also uses a separate
@@ -573,17 +824,11 @@ public class Connector {
     /*package*/ static void checkConnectionValidity(
             String apiUri, @NonNull TaskListener listener, StandardCredentials credentials, GitHub github)
             throws IOException {
-        synchronized (checked) {
-            Map<GitHub, Void> hubs = checked.get(listener);
-            if (hubs != null && hubs.containsKey(github)) {
-                // only check if not already in use
-                return;
-            }
-            if (hubs == null) {
-                hubs = new WeakHashMap<>();
-                checked.put(listener, hubs);
-            }
-            hubs.put(github, null);
+        Map<GitHub, Boolean> hubs = checked.computeIfAbsent(
+                listener, key -> Caffeine.newBuilder().weakKeys().<GitHub, Boolean>build().asMap());
+        if (hubs.putIfAbsent(github, Boolean.TRUE) != null) {
+            // only check if not already in use
+            return;
         }
         if (credentials != null && !isCredentialValid(github)) {
             String message = String.format(
@@ -616,6 +861,13 @@ public class Connector {
         ApiRateLimitChecker.configureThreadLocalChecker(listener, github);
     }
 
+    /*package*/
+    static void configureLocalRateLimitChecker(
+            @NonNull TaskListener listener, GitHub github, @NonNull ApiRateLimitChecker.Priority priority)
+            throws IOException, InterruptedException {
+        ApiRateLimitChecker.configureThreadLocalChecker(listener, github, priority);
+    }
+
     @Extension
     public static class UnusedConnectionDestroyer extends PeriodicWork {
 
@@ -631,6 +883,166 @@ public class Connector {
             long unusedThreshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(30);
 
             GitHubConnection.removeAllUnused(unusedThreshold);
+
+            if (LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "GitHub connection statistics: {0}", getStatistics());
+                for (ApiRequestScheduler.Statistics statistics : ApiRequestScheduler.getStatistics()) {
+                    LOGGER.log(FINE, "GitHub API request statistics for {0}", statistics);
+                }
+                for (EndpointClient.Statistics statistics : EndpointClient.getStatistics()) {
+                    LOGGER.log(FINE, "HTTP client statistics for {0}", statistics);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the rate limit of each connection in the {@link RateLimitTelemetry}.
+     *
+     * <p>The rate limit reported by the last response of each connection is used, so sampling makes no
+     * API requests.
+     */
+    static void sampleRateLimits() {
+        for (Map.Entry<ConnectionId, GitHubConnection> entry : connections.entrySet()) {
+            ConnectionId connectionId = entry.getKey();
+            GitHubConnection record = entry.getValue();
+            GHRateLimit.Record core = record.gitHub.lastRateLimit().getCore();
+            if (!(core instanceof GHRateLimit.UnknownLimitRecord)) {
+                RateLimitTelemetry.sample(connectionId.toString(), connectionId.apiUrl, record.credentialsId, core);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the connections.
+     *
+     * @return a snapshot of the statistics.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public static Statistics getStatistics() {
+        return new Statistics();
+    }
+
+    /** A snapshot of the connection registry statistics. */
+    @Restricted(NoExternalUse.class)
+    public static final class Statistics {
+        private static final LongAdder verifications = new LongAdder();
+        private static final LongAdder sharedVerifications = new LongAdder();
+        private static final LongAdder verificationNanos = new LongAdder();
+        private static final AtomicLong maxVerificationNanos = new AtomicLong();
+        private static final LongAdder evictions = new LongAdder();
+
+        private final int connectionCount;
+        private final int usedConnectionCount;
+        private final long usageCount;
+        private final long verificationCount;
+        private final long sharedVerificationCount;
+        private final long totalVerificationNanos;
+        private final long maxVerificationTimeNanos;
+        private final long evictionCount;
+
+        private Statistics() {
+            int connectionCount = 0;
+            int usedConnectionCount = 0;
+            long usageCount = 0;
+            for (GitHubConnection connection : connections.values()) {
+                int usage = connection.usageCount.get();
+                connectionCount++;
+                usageCount += usage;
+                if (usage > 0) {
+                    usedConnectionCount++;
+                }
+            }
+            this.connectionCount = connectionCount;
+            this.usedConnectionCount = usedConnectionCount;
+            this.usageCount = usageCount;
+            this.verificationCount = verifications.sum();
+            this.sharedVerificationCount = sharedVerifications.sum();
+            this.totalVerificationNanos = verificationNanos.sum();
+            this.maxVerificationTimeNanos = maxVerificationNanos.get();
+            this.evictionCount = evictions.sum();
+        }
+
+        private static void verified(long nanos) {
+            verifications.increment();
+            verificationNanos.add(nanos);
+            maxVerificationNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public int getConnectionCount() {
+            return connectionCount;
+        }
+
+        /**
+         * Returns the number of connections with at least one user.
+         *
+         * @return the number of connections that have not been released by all their users.
+         */
+        public int getUsedConnectionCount() {
+            return usedConnectionCount;
+        }
+
+        /**
+         * Returns the number of users of all the connections.
+         *
+         * @return the sum of the usage counts.
+         */
+        public long getUsageCount() {
+            return usageCount;
+        }
+
+        /**
+         * Returns the number of connection verifications, i.e. of requests to the API root.
+         *
+         * @return the number of verifications.
+         */
+        public long getVerificationCount() {
+            return verificationCount;
+        }
+
+        /**
+         * Returns the number of times a connection waited for a verification in progress instead of
+         * starting its own.
+         *
+         * @return the number of shared verifications.
+         */
+        public long getSharedVerificationCount() {
+            return sharedVerificationCount;
+        }
+
+        public long getAverageVerificationMillis() {
+            return verificationCount == 0
+                    ? 0
+                    : TimeUnit.NANOSECONDS.toMillis(totalVerificationNanos / verificationCount);
+        }
+
+        public long getMaxVerificationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxVerificationTimeNanos);
+        }
+
+        /**
+         * Returns the number of connections removed by {@link UnusedConnectionDestroyer}.
+         *
+         * @return the number of evictions.
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d connections (%d in use, %d users), %d verifications (%d shared, %d ms average,"
+                            + " %d ms max), %d evictions",
+                    connectionCount,
+                    usedConnectionCount,
+                    usageCount,
+                    verificationCount,
+                    sharedVerificationCount,
+                    getAverageVerificationMillis(),
+                    getMaxVerificationMillis(),
+                    evictionCount);
         }
     }
 
@@ -642,14 +1054,37 @@ public class Connector {
         private final Cache cache;
 
         private final boolean cleanupCacheFolder;
+
+        @NonNull
+        private final OkHttpClient client;
+
+        @NonNull
+        private final AuthorizationProvider authorizationProvider;
+
+        /** The credentials of the connection, {@code null} if anonymous. */
+        @CheckForNull
+        private final String credentialsId;
+
         private final AtomicInteger usageCount = new AtomicInteger(1);
         private final AtomicLong lastUsed = new AtomicLong(System.currentTimeMillis());
-        private long lastVerified = Long.MIN_VALUE;
-
-        private GitHubConnection(GitHub gitHub, Cache cache, boolean cleanupCacheFolder) {
+        private volatile long lastVerified = Long.MIN_VALUE;
+
+        /** The verification in progress, shared by all the threads waiting for it. */
+        private final AtomicReference<CompletableFuture<Void>> verification = new AtomicReference<>();
+
+        private GitHubConnection(
+                GitHub gitHub,
+                Cache cache,
+                boolean cleanupCacheFolder,
+                OkHttpClient client,
+                AuthorizationProvider authorizationProvider,
+                String credentialsId) {
             this.gitHub = gitHub;
             this.cache = cache;
             this.cleanupCacheFolder = cleanupCacheFolder;
+            this.client = client;
+            this.authorizationProvider = authorizationProvider;
+            this.credentialsId = credentialsId;
         }
 
         /**
@@ -705,6 +1140,7 @@ public class Connector {
                             LOGGER.log(WARNING, "Exception removing cache directory for unused connection: " + id, e);
                         }
                         reverseLookup.remove(record.gitHub);
+                        Statistics.evictions.increment();
 
                         // returning null will remove the connection
                         record = null;
@@ -716,17 +1152,53 @@ public class Connector {
         }
 
         public void verifyConnection() throws IOException {
-            synchronized (this) {
-                if (lastVerified > System.currentTimeMillis() - API_URL_REVALIDATE_MILLIS) {
-                    return;
+            if (lastVerified > System.currentTimeMillis() - API_URL_REVALIDATE_MILLIS) {
+                return;
+            }
+            CompletableFuture<Void> ours = new CompletableFuture<>();
+            CompletableFuture<Void> inProgress = verification.compareAndExchange(null, ours);
+            if (inProgress != null) {
+                // another thread is verifying the connection, share its outcome
+                Statistics.sharedVerifications.increment();
+                awaitVerification(inProgress);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                // the verification may have completed between the check and the exchange
+                if (lastVerified <= System.currentTimeMillis() - API_URL_REVALIDATE_MILLIS) {
+                    // Connection verification should ignore rate limits
+                    // It is possible this method will exceed the rate limit,
+                    // but very unlikely.
+                    ApiRateLimitChecker.verifyConnection(gitHub);
+                    lastVerified = System.currentTimeMillis();
+                    Statistics.verified(System.nanoTime() - start);
                 }
+                ours.complete(null);
+            } catch (IOException | RuntimeException | Error e) {
+                ours.completeExceptionally(e);
+                throw e;
+            } finally {
+                verification.set(null);
+            }
+        }
 
-                // Connection verification should ignore rate limits
-                // It is possible this method will exceed the rate limit,
-                // but very unlikely.
-                ApiRateLimitChecker.verifyConnection(gitHub);
-
-                lastVerified = System.currentTimeMillis();
+        private static void awaitVerification(@NonNull CompletableFuture<Void> verification) throws IOException {
+            try {
+                verification.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the connection verification");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                // a fresh exception, so that the stack trace shows this thread too
+                throw new IOException(cause.getMessage(), cause);
             }
         }
     }
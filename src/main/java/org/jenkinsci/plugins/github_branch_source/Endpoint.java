@@ -47,6 +47,7 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 
@@ -58,6 +59,29 @@ public class Endpoint extends AbstractDescribableImpl<Endpoint> {
     private final String name;
     private final String apiUri;
 
+    /** The maximum number of idle connections to keep open, {@code null} for the default. */
+    @CheckForNull
+    private Integer maxIdleConnections;
+
+    /** How long (in seconds) to keep idle connections open, {@code null} for the default. */
+    @CheckForNull
+    private Integer keepAliveSeconds;
+
+    /** The maximum number of requests in flight, {@code null} for no limit. */
+    @CheckForNull
+    private Integer maxConcurrentRequests;
+
+    /** The connect timeout in seconds, {@code null} for the default. */
+    @CheckForNull
+    private Integer connectTimeoutSeconds;
+
+    /** The read timeout in seconds, {@code null} for the default. */
+    @CheckForNull
+    private Integer readTimeoutSeconds;
+
+    /** {@code true} to only use HTTP/1.1, for servers or proxies with a broken HTTP/2 support. */
+    private boolean disableHttp2;
+
     @DataBoundConstructor
     public Endpoint(String apiUri, String name) {
         this.apiUri = GitHubConfiguration.normalizeApiUri(Util.fixEmptyAndTrim(apiUri));
@@ -70,7 +94,14 @@ public class Endpoint extends AbstractDescribableImpl<Endpoint> {
 
     private Object readResolve() throws ObjectStreamException {
         if (!apiUri.equals(GitHubConfiguration.normalizeApiUri(apiUri))) {
-            return new Endpoint(apiUri, name);
+            Endpoint endpoint = new Endpoint(apiUri, name);
+            endpoint.maxIdleConnections = maxIdleConnections;
+            endpoint.keepAliveSeconds = keepAliveSeconds;
+            endpoint.maxConcurrentRequests = maxConcurrentRequests;
+            endpoint.connectTimeoutSeconds = connectTimeoutSeconds;
+            endpoint.readTimeoutSeconds = readTimeoutSeconds;
+            endpoint.disableHttp2 = disableHttp2;
+            return endpoint;
         }
         return this;
     }
@@ -85,6 +116,81 @@ public class Endpoint extends AbstractDescribableImpl<Endpoint> {
         return name;
     }
 
+    @CheckForNull
+    public Integer getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    @DataBoundSetter
+    public void setMaxIdleConnections(@CheckForNull Integer maxIdleConnections) {
+        this.maxIdleConnections = positiveOrNull(maxIdleConnections);
+    }
+
+    @CheckForNull
+    public Integer getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    @DataBoundSetter
+    public void setKeepAliveSeconds(@CheckForNull Integer keepAliveSeconds) {
+        this.keepAliveSeconds = positiveOrNull(keepAliveSeconds);
+    }
+
+    @CheckForNull
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentRequests(@CheckForNull Integer maxConcurrentRequests) {
+        this.maxConcurrentRequests = positiveOrNull(maxConcurrentRequests);
+    }
+
+    @CheckForNull
+    public Integer getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeoutSeconds(@CheckForNull Integer connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = positiveOrNull(connectTimeoutSeconds);
+    }
+
+    @CheckForNull
+    public Integer getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setReadTimeoutSeconds(@CheckForNull Integer readTimeoutSeconds) {
+        this.readTimeoutSeconds = positiveOrNull(readTimeoutSeconds);
+    }
+
+    public boolean isDisableHttp2() {
+        return disableHttp2;
+    }
+
+    @DataBoundSetter
+    public void setDisableHttp2(boolean disableHttp2) {
+        this.disableHttp2 = disableHttp2;
+    }
+
+    /**
+     * Returns a summary of the HTTP client settings, changing whenever the client has to be rebuilt.
+     *
+     * @return the summary.
+     */
+    @NonNull
+    String getClientSettings() {
+        return maxIdleConnections + "/" + keepAliveSeconds + "/" + maxConcurrentRequests + "/" + connectTimeoutSeconds
+                + "/" + readTimeoutSeconds + "/" + disableHttp2;
+    }
+
+    @CheckForNull
+    private static Integer positiveOrNull(@CheckForNull Integer value) {
+        return value == null || value <= 0 ? null : value;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Endpoint{");
@@ -0,0 +1,328 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.okhttp.api.JenkinsOkHttpClient;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.github.config.GitHubServerConfig;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The HTTP client shared by all the connections to an API endpoint.
+ *
+ * <p>Each endpoint has its own connection pool, dispatcher and concurrency limit, tuned by the
+ * settings of its {@link Endpoint}, so that a slow GitHub Enterprise server cannot use up the
+ * sockets and request slots meant for other endpoints. The connections created by {@link
+ * Connector} derive their client from this one, adding their own cache. The requests of all these
+ * connections are kept within the secondary rate limits of GitHub by one {@link SecondaryRateLimiter}.
+ */
+@Restricted(NoExternalUse.class)
+public final class EndpointClient {
+
+    private static final Map<String, EndpointClient> clients = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final String apiUrl;
+
+    /** The settings the client was built with, to detect configuration changes. */
+    @NonNull
+    private final String settings;
+
+    @NonNull
+    private final ConnectionPool connectionPool;
+
+    @NonNull
+    private final Dispatcher dispatcher;
+
+    @NonNull
+    private final Metrics metrics = new Metrics();
+
+    /** Limits the requests in flight. */
+    @NonNull
+    private final SecondaryRateLimiter limiter;
+
+    @NonNull
+    private final OkHttpClient client;
+
+    private EndpointClient(@NonNull String apiUrl, @CheckForNull Endpoint endpoint, @NonNull String settings) {
+        this.apiUrl = apiUrl;
+        this.settings = settings;
+        Integer maxIdleConnections = endpoint == null ? null : endpoint.getMaxIdleConnections();
+        Integer keepAliveSeconds = endpoint == null ? null : endpoint.getKeepAliveSeconds();
+        this.connectionPool = new ConnectionPool(
+                maxIdleConnections == null ? 5 : maxIdleConnections,
+                keepAliveSeconds == null ? TimeUnit.MINUTES.toSeconds(5) : keepAliveSeconds,
+                TimeUnit.SECONDS);
+        this.dispatcher = new Dispatcher();
+        Integer maxConcurrentRequests = endpoint == null ? null : endpoint.getMaxConcurrentRequests();
+        if (maxConcurrentRequests != null) {
+            dispatcher.setMaxRequests(maxConcurrentRequests);
+            dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+        }
+        this.limiter = new SecondaryRateLimiter(apiUrl, maxConcurrentRequests);
+        OkHttpClient.Builder builder = JenkinsOkHttpClient.newClientBuilder(new OkHttpClient())
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .eventListener(metrics);
+        if (endpoint != null) {
+            if (endpoint.getConnectTimeoutSeconds() != null) {
+                builder.connectTimeout(endpoint.getConnectTimeoutSeconds(), TimeUnit.SECONDS);
+            }
+            if (endpoint.getReadTimeoutSeconds() != null) {
+                builder.readTimeout(endpoint.getReadTimeoutSeconds(), TimeUnit.SECONDS);
+            }
+            if (endpoint.isDisableHttp2()) {
+                builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+            }
+        }
+        // the dispatcher limits only apply to asynchronous calls, the GitHub API client makes
+        // synchronous ones
+        builder.addInterceptor(limiter);
+        this.client = builder.build();
+    }
+
+    /**
+     * Returns the client of an endpoint, building a new one if the settings of the endpoint changed.
+     *
+     * @param apiUri the API endpoint or {@code null} for GitHub.
+     * @return the client.
+     */
+    @NonNull
+    static OkHttpClient forApiUrl(@CheckForNull String apiUri) {
+        String apiUrl = StringUtils.removeEnd(StringUtils.defaultIfBlank(apiUri, GitHubServerConfig.GITHUB_URL), "/");
+        Endpoint endpoint =
+                Jenkins.getInstanceOrNull() == null ? null : GitHubConfiguration.get().findEndpoint(apiUrl);
+        String settings = endpoint == null ? "" : endpoint.getClientSettings();
+        EndpointClient result = clients.compute(apiUrl, (key, existing) -> {
+            if (existing != null && existing.settings.equals(settings)) {
+                return existing;
+            }
+            if (existing != null) {
+                // connections still in use by existing GitHub instances are closed when they are released
+                existing.connectionPool.evictAll();
+            }
+            return new EndpointClient(key, endpoint, settings);
+        });
+        return result.client;
+    }
+
+    /**
+     * Returns the statistics of the endpoints used so far.
+     *
+     * @return the statistics, one entry per endpoint.
+     */
+    @NonNull
+    public static List<Statistics> getStatistics() {
+        List<Statistics> result = new ArrayList<>();
+        for (EndpointClient client : clients.values()) {
+            result.add(new Statistics(client));
+        }
+        return result;
+    }
+
+    /** Counts the calls and connections of an endpoint. */
+    private static final class Metrics extends EventListener {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder connectionsAcquired = new LongAdder();
+        private final LongAdder connectionsOpened = new LongAdder();
+
+        @Override
+        public void callStart(@NonNull Call call) {
+            calls.increment();
+        }
+
+        @Override
+        public void connectStart(
+                @NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+            connectionsOpened.increment();
+        }
+
+        @Override
+        public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+            connectionsAcquired.increment();
+        }
+    }
+
+    /** A snapshot of the connection pool and call statistics of an endpoint. */
+    @Restricted(NoExternalUse.class)
+    public static final class Statistics {
+        private final String apiUrl;
+        private final int connectionCount;
+        private final int idleConnectionCount;
+        private final int runningCallCount;
+        private final int queuedCallCount;
+        private final long callCount;
+        private final long connectionsAcquired;
+        private final long connectionsOpened;
+        private final int availablePermits;
+        private final int concurrencyLimit;
+        private final long secondaryLimitCount;
+        private final long retryAfterCount;
+        private final long backoffCount;
+        private final long concurrencyDecreaseCount;
+        private final long concurrencyIncreaseCount;
+        private final long delayedCallCount;
+
+        private Statistics(@NonNull EndpointClient client) {
+            this.apiUrl = client.apiUrl;
+            this.connectionCount = client.connectionPool.connectionCount();
+            this.idleConnectionCount = client.connectionPool.idleConnectionCount();
+            this.runningCallCount = client.dispatcher.runningCallsCount();
+            this.queuedCallCount = client.dispatcher.queuedCallsCount();
+            this.callCount = client.metrics.calls.sum();
+            this.connectionsAcquired = client.metrics.connectionsAcquired.sum();
+            this.connectionsOpened = client.metrics.connectionsOpened.sum();
+            this.availablePermits = client.limiter.getAvailablePermits();
+            int limit = client.limiter.getLimit();
+            this.concurrencyLimit = limit == Integer.MAX_VALUE ? -1 : limit;
+            this.secondaryLimitCount = client.limiter.getSecondaryLimitCount();
+            this.retryAfterCount = client.limiter.getRetryAfterCount();
+            this.backoffCount = client.limiter.getBackoffCount();
+            this.concurrencyDecreaseCount = client.limiter.getDecreaseCount();
+            this.concurrencyIncreaseCount = client.limiter.getIncreaseCount();
+            this.delayedCallCount = client.limiter.getDelayedCount();
+        }
+
+        public String getApiUrl() {
+            return apiUrl;
+        }
+
+        public int getConnectionCount() {
+            return connectionCount;
+        }
+
+        public int getIdleConnectionCount() {
+            return idleConnectionCount;
+        }
+
+        public int getActiveConnectionCount() {
+            return Math.max(0, connectionCount - idleConnectionCount);
+        }
+
+        public int getRunningCallCount() {
+            return runningCallCount;
+        }
+
+        public int getQueuedCallCount() {
+            return queuedCallCount;
+        }
+
+        public long getCallCount() {
+            return callCount;
+        }
+
+        /**
+         * Returns the share of calls that reused a pooled connection.
+         *
+         * @return the ratio between {@code 0.0} and {@code 1.0}.
+         */
+        public double getConnectionReuseRatio() {
+            if (connectionsAcquired == 0) {
+                return 0.0;
+            }
+            return Math.max(0.0, 1.0 - (double) connectionsOpened / connectionsAcquired);
+        }
+
+        /**
+         * Returns the number of additional requests that may be in flight.
+         *
+         * @return the number of requests or {@code -1} if there is no limit.
+         */
+        public int getAvailablePermits() {
+            return availablePermits;
+        }
+
+        /**
+         * Returns the number of requests that may be in flight, as adapted to the secondary rate limits.
+         *
+         * @return the number of requests or {@code -1} if there is no limit.
+         */
+        public int getConcurrencyLimit() {
+            return concurrencyLimit;
+        }
+
+        /**
+         * Returns the number of responses reporting a secondary rate limit.
+         *
+         * @return the number of responses.
+         */
+        public long getSecondaryLimitCount() {
+            return secondaryLimitCount;
+        }
+
+        /**
+         * Returns the number of secondary rate limit responses that said how long to wait.
+         *
+         * @return the number of responses with a {@code Retry-After} header.
+         */
+        public long getRetryAfterCount() {
+            return retryAfterCount;
+        }
+
+        /**
+         * Returns the number of secondary rate limit responses that did not say how long to wait.
+         *
+         * @return the number of exponential backoffs.
+         */
+        public long getBackoffCount() {
+            return backoffCount;
+        }
+
+        public long getConcurrencyDecreaseCount() {
+            return concurrencyDecreaseCount;
+        }
+
+        public long getConcurrencyIncreaseCount() {
+            return concurrencyIncreaseCount;
+        }
+
+        /**
+         * Returns the number of calls that waited for the concurrency limit or a secondary rate limit.
+         *
+         * @return the number of calls.
+         */
+        public long getDelayedCallCount() {
+            return delayedCallCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d connections (%d idle), %d calls running, %d queued, %d calls, %.0f%% connection reuse,"
+                            + " %d secondary rate limits (%d with Retry-After, %d backoffs), concurrency limit %d"
+                            + " (%d decreases, %d increases), %d calls delayed",
+                    apiUrl,
+                    connectionCount,
+                    idleConnectionCount,
+                    runningCallCount,
+                    queuedCallCount,
+                    callCount,
+                    getConnectionReuseRatio() * 100,
+                    secondaryLimitCount,
+                    retryAfterCount,
+                    backoffCount,
+                    concurrencyLimit,
+                    concurrencyDecreaseCount,
+                    concurrencyIncreaseCount,
+                    delayedCallCount);
+        }
+    }
+}
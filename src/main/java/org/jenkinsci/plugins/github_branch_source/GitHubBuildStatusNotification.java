@@ -78,7 +78,8 @@ public class GitHubBuildStatusNotification {
                     return;
                 }
                 try {
-                    Connector.configureLocalRateLimitChecker(listener, gitHub);
+                    Connector.configureLocalRateLimitChecker(
+                            listener, gitHub, ApiRateLimitChecker.Priority.NOTIFICATION);
                     GHRepository repo = lookUpRepo(gitHub, build.getParent());
                     if (repo != null) {
                         Result result = build.getResult();
@@ -0,0 +1,369 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.eclipse.jgit.lib.Constants;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+/**
+ * A snapshot of the branches, open pull requests and tags of a repository fetched through the
+ * GitHub GraphQL API.
+ *
+ * <p>The REST scan needs one request per page of each listing plus one request per tag (to resolve
+ * its date), per pull request author and per merge commit. The GraphQL queries return all of that
+ * inline, one page of 100 items per request.
+ *
+ * @see GraphQLScanTrait
+ */
+final class GitHubGraphQLScan {
+
+    private static final String REFS_QUERY = "query($owner: String!, $name: String!, $refPrefix: String!,"
+            + " $cursor: String) {"
+            + " repository(owner: $owner, name: $name) {"
+            + " refs(refPrefix: $refPrefix, first: 100, after: $cursor) {"
+            + " pageInfo { hasNextPage endCursor }"
+            + " nodes { name target { __typename oid"
+            + " ... on Commit { committedDate }"
+            + " ... on Tag { tagger { date } target { oid } } } } } } }";
+
+    private static final String PULL_REQUESTS_QUERY = "query($owner: String!, $name: String!, $cursor: String) {"
+            + " repository(owner: $owner, name: $name) {"
+            + " pullRequests(states: OPEN, first: 100, after: $cursor) {"
+            + " pageInfo { hasNextPage endCursor }"
+            + " nodes { number headRefOid baseRefOid mergeable"
+            + " author { login ... on User { name email } }"
+            + " potentialMergeCommit { oid parents(first: 3) { nodes { oid } } } } } } }";
+
+    /** Branch name to head commit SHA, default branch first, or {@code null} if not fetched. */
+    @CheckForNull
+    private final Map<String, String> branches;
+    /** Open pull requests keyed by number, or {@code null} if not fetched. */
+    @CheckForNull
+    private final Map<Integer, PullRequestInfo> pullRequests;
+    /** Tags in listing order, or {@code null} if not fetched. */
+    @CheckForNull
+    private final List<TagInfo> tags;
+
+    private GitHubGraphQLScan(
+            @CheckForNull Map<String, String> branches,
+            @CheckForNull Map<Integer, PullRequestInfo> pullRequests,
+            @CheckForNull List<TagInfo> tags) {
+        this.branches = branches;
+        this.pullRequests = pullRequests;
+        this.tags = tags;
+    }
+
+    /**
+     * Fetches a snapshot of the repository.
+     *
+     * @param gitHub the connection, must have been obtained from {@link Connector#connect}.
+     * @param repo the repository.
+     * @param fetchBranches {@code true} to include branches.
+     * @param fetchPullRequests {@code true} to include open pull requests.
+     * @param fetchTags {@code true} to include tags.
+     * @return the snapshot.
+     * @throws IOException if the GraphQL API could not be queried.
+     */
+    @NonNull
+    static GitHubGraphQLScan fetch(
+            @NonNull GitHub gitHub,
+            @NonNull GHRepository repo,
+            boolean fetchBranches,
+            boolean fetchPullRequests,
+            boolean fetchTags)
+            throws IOException {
+        String owner = repo.getOwnerName();
+        String name = repo.getName();
+        Map<String, String> branches = null;
+        if (fetchBranches) {
+            Map<String, String> result = new LinkedHashMap<>();
+            // local optimization: always try the default branch first in any search
+            String defaultBranch = repo.getDefaultBranch();
+            List<String[]> others = new ArrayList<>();
+            paginate(gitHub, REFS_QUERY, owner, name, Constants.R_HEADS, "refs", node -> {
+                String branchName = node.path("name").asText();
+                String sha = node.path("target").path("oid").asText();
+                if (branchName.equals(defaultBranch)) {
+                    result.put(branchName, sha);
+                } else {
+                    others.add(new String[] {branchName, sha});
+                }
+            });
+            for (String[] other : others) {
+                result.put(other[0], other[1]);
+            }
+            branches = Collections.unmodifiableMap(result);
+        }
+        Map<Integer, PullRequestInfo> pullRequests = null;
+        if (fetchPullRequests) {
+            Map<Integer, PullRequestInfo> result = new HashMap<>();
+            paginate(gitHub, PULL_REQUESTS_QUERY, owner, name, null, "pullRequests", node -> {
+                PullRequestInfo info = new PullRequestInfo(node);
+                result.put(info.getNumber(), info);
+            });
+            pullRequests = Collections.unmodifiableMap(result);
+        }
+        List<TagInfo> tags = null;
+        if (fetchTags) {
+            List<TagInfo> result = new ArrayList<>();
+            paginate(
+                    gitHub, REFS_QUERY, owner, name, Constants.R_TAGS, "refs", node -> result.add(new TagInfo(node)));
+            tags = Collections.unmodifiableList(result);
+        }
+        return new GitHubGraphQLScan(branches, pullRequests, tags);
+    }
+
+    private static void paginate(
+            @NonNull GitHub gitHub,
+            @NonNull String query,
+            @NonNull String owner,
+            @NonNull String name,
+            @CheckForNull String refPrefix,
+            @NonNull String connection,
+            @NonNull Consumer<JsonNode> consumer)
+            throws IOException {
+        String cursor = null;
+        do {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("owner", owner);
+            variables.put("name", name);
+            if (refPrefix != null) {
+                variables.put("refPrefix", refPrefix);
+            }
+            variables.put("cursor", cursor);
+            JsonNode page = Connector.executeGraphQL(gitHub, query, variables)
+                    .path("repository")
+                    .path(connection);
+            if (!page.isObject()) {
+                throw new IOException("Could not query " + connection + " of " + owner + "/" + name);
+            }
+            for (JsonNode node : page.path("nodes")) {
+                consumer.accept(node);
+            }
+            JsonNode pageInfo = page.path("pageInfo");
+            cursor = pageInfo.path("hasNextPage").asBoolean(false)
+                    ? Util.fixEmpty(pageInfo.path("endCursor").asText(""))
+                    : null;
+        } while (cursor != null);
+    }
+
+    private static long parseDate(@NonNull JsonNode node) {
+        String text = node.asText("");
+        if (text.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Instant.parse(text).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns the branch name to head commit SHA mapping.
+     *
+     * @return the branches, default branch first, or {@code null} if branches were not fetched.
+     */
+    @CheckForNull
+    Map<String, String> getBranches() {
+        return branches;
+    }
+
+    /**
+     * Returns the details of an open pull request.
+     *
+     * @param number the pull request number.
+     * @return the details or {@code null} if pull requests were not fetched or the pull request was
+     *     not open when the snapshot was taken.
+     */
+    @CheckForNull
+    PullRequestInfo getPullRequest(int number) {
+        return pullRequests == null ? null : pullRequests.get(number);
+    }
+
+    /**
+     * Returns the tags.
+     *
+     * @return the tags or {@code null} if tags were not fetched.
+     */
+    @CheckForNull
+    List<TagInfo> getTags() {
+        return tags;
+    }
+
+    /** The details of an open pull request. */
+    static final class PullRequestInfo {
+        private final int number;
+        private final String headSha;
+        private final String baseSha;
+
+        @CheckForNull
+        private final Boolean mergeable;
+
+        @CheckForNull
+        private final String authorLogin;
+
+        @CheckForNull
+        private final String authorName;
+
+        @CheckForNull
+        private final String authorEmail;
+
+        @CheckForNull
+        private final String mergeCommitSha;
+
+        @NonNull
+        private final List<String> mergeCommitParents;
+
+        PullRequestInfo(@NonNull JsonNode node) {
+            this.number = node.path("number").asInt();
+            this.headSha = node.path("headRefOid").asText();
+            this.baseSha = node.path("baseRefOid").asText();
+            switch (node.path("mergeable").asText("UNKNOWN")) {
+                case "MERGEABLE":
+                    this.mergeable = Boolean.TRUE;
+                    break;
+                case "CONFLICTING":
+                    this.mergeable = Boolean.FALSE;
+                    break;
+                default:
+                    // GitHub has not computed it yet
+                    this.mergeable = null;
+                    break;
+            }
+            JsonNode author = node.path("author");
+            this.authorLogin = Util.fixEmpty(author.path("login").asText(""));
+            this.authorName = Util.fixEmpty(author.path("name").asText(""));
+            this.authorEmail = Util.fixEmpty(author.path("email").asText(""));
+            JsonNode mergeCommit = node.path("potentialMergeCommit");
+            this.mergeCommitSha = Util.fixEmpty(mergeCommit.path("oid").asText(""));
+            List<String> parents = new ArrayList<>();
+            for (JsonNode parent : mergeCommit.path("parents").path("nodes")) {
+                parents.add(parent.path("oid").asText());
+            }
+            this.mergeCommitParents = Collections.unmodifiableList(parents);
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        String getHeadSha() {
+            return headSha;
+        }
+
+        String getBaseSha() {
+            return baseSha;
+        }
+
+        /**
+         * Returns the mergeability.
+         *
+         * @return {@code null} if GitHub had not finished computing it when the snapshot was taken.
+         */
+        @CheckForNull
+        Boolean getMergeable() {
+            return mergeable;
+        }
+
+        /**
+         * Returns the author login.
+         *
+         * @return the login or {@code null} if the author account no longer exists.
+         */
+        @CheckForNull
+        String getAuthorLogin() {
+            return authorLogin;
+        }
+
+        @CheckForNull
+        String getAuthorName() {
+            return authorName;
+        }
+
+        @CheckForNull
+        String getAuthorEmail() {
+            return authorEmail;
+        }
+
+        @CheckForNull
+        String getMergeCommitSha() {
+            return mergeCommitSha;
+        }
+
+        @NonNull
+        List<String> getMergeCommitParents() {
+            return mergeCommitParents;
+        }
+    }
+
+    /** The details of a tag. */
+    static final class TagInfo {
+        private final String name;
+        private final String sha;
+        private final long date;
+
+        TagInfo(@NonNull String name, @NonNull String sha, long date) {
+            this.name = name;
+            this.sha = sha;
+            this.date = date;
+        }
+
+        TagInfo(@NonNull JsonNode node) {
+            this(node.path("name").asText(), node.path("target"));
+        }
+
+        TagInfo(@NonNull String name, @NonNull JsonNode target) {
+            this.name = name;
+            if ("Tag".equals(target.path("__typename").asText())) {
+                // annotated tag object, we want the sha of the tagged commit not the tag object
+                this.sha = target.path("target").path("oid").asText();
+                this.date = parseDate(target.path("tagger").path("date"));
+            } else {
+                this.sha = target.path("oid").asText();
+                this.date = parseDate(target.path("committedDate"));
+            }
+        }
+
+        /**
+         * Returns the tag name.
+         *
+         * @return the tag name without the {@code refs/tags/} prefix.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the SHA of the tagged object.
+         *
+         * @return the SHA of the tagged commit for both lightweight and annotated tags.
+         */
+        String getSha() {
+            return sha;
+        }
+
+        /**
+         * Returns the tag date.
+         *
+         * @return the tagger date of annotated tags, the commit date of lightweight tags, or {@code 0L}
+         *     if unknown.
+         */
+        long getDate() {
+            return date;
+        }
+    }
+}
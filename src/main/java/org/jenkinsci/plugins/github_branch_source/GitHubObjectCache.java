@@ -0,0 +1,366 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.util.AtomicFileWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.github.config.GitHubServerConfig;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTagObject;
+import org.kohsuke.github.GitHub;
+
+/**
+ * A cache of the git objects of an API endpoint, keyed by repository and SHA.
+ *
+ * <p>Git objects never change once they exist, so there is no need to revalidate them: a lookup for
+ * a known SHA does not make any request, where the HTTP cache of the connection would still need a
+ * conditional request. Only the details used by this plugin are kept: the date and parents of
+ * commits and the tagged commit and date of annotated tags. An object is only served for the
+ * repository it was fetched from, so that knowing a SHA does not tell anything about a repository
+ * the credentials in use cannot read.
+ *
+ * <p>Each endpoint keeps up to {@link #MAX_ENTRIES} objects, evicting the least recently used
+ * first. The objects are saved under {@code JENKINS_HOME} so they survive restarts.
+ */
+@Restricted(NoExternalUse.class)
+public final class GitHubObjectCache {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubObjectCache.class.getName());
+
+    /** The maximum number of objects to keep per endpoint, {@code 0} disables the cache. */
+    static final int MAX_ENTRIES =
+            Math.max(0, SystemProperties.getInteger(GitHubObjectCache.class.getName() + ".maxEntries", 20000));
+
+    /** How long to wait before saving changes, so that a scan results in a single write. */
+    private static final long SAVE_DELAY_SECONDS = 30;
+
+    private static final Map<String, GitHubObjectCache> caches = new ConcurrentHashMap<>();
+
+    /** The file the objects are saved to or {@code null} if they are kept in memory only. */
+    @CheckForNull
+    private final File file;
+
+    /** The maximum number of objects to keep, {@code 0} disables the cache. */
+    private final int maxEntries;
+
+    private final Map<String, GitObject> objects = new LinkedHashMap<String, GitObject>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GitObject> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private boolean saveScheduled;
+
+    /** Whether the saved objects were loaded, which is left to the first lookup. */
+    private boolean loaded;
+
+    GitHubObjectCache(@CheckForNull File file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cache of the endpoint of a connection.
+     *
+     * @param gitHub the connection.
+     * @return the cache.
+     */
+    @NonNull
+    static GitHubObjectCache of(@NonNull GitHub gitHub) {
+        return forEndpoint(gitHub.getApiUrl());
+    }
+
+    /**
+     * Returns the cache of an endpoint.
+     *
+     * @param apiUri the API endpoint or {@code null} for GitHub.
+     * @return the cache.
+     */
+    @NonNull
+    static GitHubObjectCache forEndpoint(@CheckForNull String apiUri) {
+        String apiUrl = StringUtils.removeEnd(StringUtils.defaultIfBlank(apiUri, GitHubServerConfig.GITHUB_URL), "/");
+        File file = getFile(apiUrl);
+        // a different file means a different JENKINS_HOME, do not reuse what was loaded from the old one
+        return caches.compute(
+                apiUrl,
+                (key, cache) ->
+                        cache == null || !Objects.equals(cache.file, file)
+                                ? new GitHubObjectCache(file, MAX_ENTRIES)
+                                : cache);
+    }
+
+    @CheckForNull
+    private static File getFile(@NonNull String apiUrl) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || MAX_ENTRIES == 0) {
+            return null;
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(apiUrl.getBytes(StandardCharsets.UTF_8));
+            return new File(
+                    new File(jenkins.getRootDir(), GitHubObjectCache.class.getName()),
+                    Base64.getUrlEncoder().withoutPadding().encodeToString(sha256.digest()) + ".txt");
+        } catch (NoSuchAlgorithmException e) {
+            // keep the objects in memory only
+            return null;
+        }
+    }
+
+    /**
+     * Identifies an object of a repository, with no spaces as the file is split on them.
+     *
+     * @param repo the repository.
+     * @param sha the SHA of the object.
+     * @return the key of the object.
+     */
+    @NonNull
+    private static String key(@NonNull GHRepository repo, @NonNull String sha) {
+        return repo.getFullName().toLowerCase(Locale.ENGLISH) + "@" + sha;
+    }
+
+    /**
+     * Looks up an object.
+     *
+     * @param repo the repository the object is looked up in.
+     * @param sha the SHA of the object.
+     * @return the object or {@code null} if it is not known for this repository.
+     */
+    @CheckForNull
+    synchronized GitObject get(@NonNull GHRepository repo, @NonNull String sha) {
+        if (!loaded) {
+            load();
+        }
+        return objects.get(key(repo, sha));
+    }
+
+    /**
+     * Remembers an object. Anything else than a SHA, such as a branch name, is not remembered since
+     * what it points to changes.
+     *
+     * @param repo the repository the object was fetched from.
+     * @param sha the SHA of the object.
+     * @param object the object.
+     */
+    void put(@NonNull GHRepository repo, @NonNull String sha, @NonNull GitObject object) {
+        if (maxEntries == 0 || !ObjectId.isId(sha)) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                load();
+            }
+            objects.put(key(repo, sha), object);
+            if (file == null || saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        Timer.get().schedule(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns a commit, fetching it if it is not known.
+     *
+     * @param repo the repository.
+     * @param sha the SHA of the commit.
+     * @return the commit.
+     * @throws IOException if the commit could not be fetched.
+     */
+    @NonNull
+    GitObject getCommit(@NonNull GHRepository repo, @NonNull String sha) throws IOException {
+        GitObject object = get(repo, sha);
+        if (object == null || object.isTag()) {
+            GHCommit commit = repo.getCommit(sha);
+            object = GitObject.commit(commit.getCommitDate().getTime(), commit.getParentSHA1s());
+            put(repo, sha, object);
+        }
+        return object;
+    }
+
+    /**
+     * Returns an annotated tag object, fetching it if it is not known.
+     *
+     * @param repo the repository.
+     * @param sha the SHA of the tag object.
+     * @return the tag object.
+     * @throws IOException if the tag object could not be fetched.
+     */
+    @NonNull
+    GitObject getTag(@NonNull GHRepository repo, @NonNull String sha) throws IOException {
+        GitObject object = get(repo, sha);
+        if (object == null || !object.isTag()) {
+            GHTagObject tag = repo.getTagObject(sha);
+            object = GitObject.tag(tag.getObject().getSha(), tag.getTagger().getDate().getTime());
+            put(repo, sha, object);
+        }
+        return object;
+    }
+
+    synchronized void load() {
+        loaded = true;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = StringUtils.split(line, ' ');
+                if (fields.length < 3 || fields[1].indexOf('@') < 0) {
+                    // saved by an older version, which did not tell the repository of the object
+                    continue;
+                }
+                long date = Long.parseLong(fields[2]);
+                if ("t".equals(fields[0]) && fields.length == 4) {
+                    objects.put(fields[1], GitObject.tag(fields[3], date));
+                } else if ("c".equals(fields[0])) {
+                    objects.put(fields[1], GitObject.commit(date, Arrays.asList(fields).subList(3, fields.length)));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Could not load cached git objects from " + file, e);
+        }
+    }
+
+    void save() {
+        if (file == null) {
+            return;
+        }
+        List<Map.Entry<String, GitObject>> entries;
+        synchronized (this) {
+            if (!saveScheduled) {
+                return;
+            }
+            saveScheduled = false;
+            // least recently used first, so that the order survives a reload
+            entries = new ArrayList<>(objects.entrySet());
+        }
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+            try {
+                for (Map.Entry<String, GitObject> entry : entries) {
+                    entry.getValue().write(entry.getKey(), writer);
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save cached git objects to " + file, e);
+        }
+    }
+
+    /** Saves pending changes when Jenkins shuts down. */
+    @Terminator
+    public static void saveAll() {
+        for (GitHubObjectCache cache : caches.values()) {
+            cache.save();
+        }
+    }
+
+    /** The cached details of a commit or an annotated tag object. */
+    static final class GitObject {
+        private final long date;
+
+        @CheckForNull
+        private final String target;
+
+        @NonNull
+        private final List<String> parents;
+
+        private GitObject(long date, @CheckForNull String target, @NonNull List<String> parents) {
+            this.date = date;
+            this.target = target;
+            this.parents = parents;
+        }
+
+        @NonNull
+        static GitObject commit(long date, @NonNull List<String> parents) {
+            return new GitObject(date, null, Collections.unmodifiableList(new ArrayList<>(parents)));
+        }
+
+        @NonNull
+        static GitObject tag(@NonNull String target, long date) {
+            return new GitObject(date, target, Collections.emptyList());
+        }
+
+        boolean isTag() {
+            return target != null;
+        }
+
+        /**
+         * Returns the date.
+         *
+         * @return the commit date of commits or the tagger date of annotated tags.
+         */
+        long getDate() {
+            return date;
+        }
+
+        /**
+         * Returns the tagged object.
+         *
+         * @return the SHA of the tagged object or {@code null} for commits.
+         */
+        @CheckForNull
+        String getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the parents.
+         *
+         * @return the SHA of the parents of commits, empty for annotated tags.
+         */
+        @NonNull
+        List<String> getParents() {
+            return parents;
+        }
+
+        private void write(@NonNull String sha, @NonNull Writer writer) throws IOException {
+            if (target != null) {
+                writer.write("t " + sha + " " + date + " " + target + "\n");
+            } else {
+                writer.write("c " + sha + " " + date);
+                for (String parent : parents) {
+                    writer.write(" " + parent);
+                }
+                writer.write("\n");
+            }
+        }
+    }
+}
@@ -28,10 +28,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import jenkins.model.Jenkins;
 import jenkins.util.io.FileBoolean;
 import org.kohsuke.github.GHEvent;
@@ -44,8 +47,17 @@ import org.kohsuke.github.GitHub;
 public class GitHubOrgWebHook {
 
     private static final Logger LOGGER = Logger.getLogger(GitHubOrgWebHook.class.getName());
-    private static final List<GHEvent> EVENTS =
-            Arrays.asList(GHEvent.REPOSITORY, GHEvent.PUSH, GHEvent.PULL_REQUEST, GHEvent.PULL_REQUEST_REVIEW_COMMENT);
+    private static final List<GHEvent> EVENTS = Arrays.asList(
+            GHEvent.REPOSITORY,
+            GHEvent.PUSH,
+            GHEvent.PULL_REQUEST,
+            GHEvent.PULL_REQUEST_REVIEW_COMMENT,
+            // team changes, for the navigators scoped to a team
+            GHEvent.TEAM,
+            GHEvent.TEAM_ADD);
+    /** The events recorded in the tracking file of each organization. */
+    private static final String TRACKED_EVENTS =
+            EVENTS.stream().map(GHEvent::name).collect(Collectors.joining(","));
 
     public static void register(GitHub hub, String orgName) throws IOException {
         String rootUrl = System.getProperty("jenkins.hook.url");
@@ -56,19 +68,30 @@ public class GitHubOrgWebHook {
             return;
         }
         GHUser u = hub.getUser(orgName);
-        FileBoolean orghook = new FileBoolean(getTrackingFile(orgName));
-        if (orghook.isOff()) {
+        File trackingFile = getTrackingFile(orgName);
+        FileBoolean orghook = new FileBoolean(trackingFile);
+        // hooks registered before the current events were needed are checked again
+        if (orghook.isOff() || !isTrackingEvents(trackingFile)) {
             try {
                 GHOrganization org = hub.getOrganization(orgName);
                 String url = rootUrl + "github-webhook/";
-                boolean found = false;
+                GHHook existing = null;
                 for (GHHook hook : org.getHooks()) {
-                    if (hook.getConfig().get("url").equals(url)) {
-                        found = !hook.getEvents().containsAll(EVENTS);
+                    if (url.equals(hook.getConfig().get("url"))) {
+                        existing = hook;
                         break;
                     }
                 }
-                if (!found) {
+                if (existing != null && !existing.getEvents().containsAll(EVENTS)) {
+                    // the API offers no way to edit the events of a hook, so it is created again
+                    existing.delete();
+                    LOGGER.log(
+                            Level.INFO,
+                            "A webhook missing some events was deregistered for the organization {0}",
+                            org.getHtmlUrl());
+                    existing = null;
+                }
+                if (existing == null) {
                     org.createWebHook(new URL(url), EVENTS);
                     LOGGER.log(Level.INFO, "A webhook was registered for the organization {0}", org.getHtmlUrl());
                     // keep trying until the hook gets successfully installed
@@ -76,6 +99,7 @@ public class GitHubOrgWebHook {
                     // a repeated failure, but this code doesn't execute too often.
                 }
                 orghook.on();
+                Files.write(trackingFile.toPath(), TRACKED_EVENTS.getBytes(StandardCharsets.UTF_8));
             } catch (FileNotFoundException e) {
                 LOGGER.log(
                         Level.WARNING,
@@ -97,6 +121,22 @@ public class GitHubOrgWebHook {
         return new File(Jenkins.get().getRootDir(), "github-webhooks/GitHubOrgHook." + orgName);
     }
 
+    /**
+     * Checks whether the hook was registered with the current events.
+     *
+     * @param trackingFile the tracking file of the organization.
+     * @return {@code false} if the file is missing or lists other events, as it does for hooks
+     *     registered by older versions.
+     */
+    private static boolean isTrackingEvents(File trackingFile) {
+        try {
+            return TRACKED_EVENTS.equals(
+                    new String(Files.readAllBytes(trackingFile.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     public static void deregister(GitHub hub, String orgName) throws IOException {
         String rootUrl = Jenkins.get().getRootUrl();
         if (rootUrl == null) {
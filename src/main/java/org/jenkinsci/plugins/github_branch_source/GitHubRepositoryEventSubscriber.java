@@ -87,6 +87,8 @@ public class GitHubRepositoryEventSubscriber extends GHEventsSubscriber {
             LOGGER.log(Level.FINE, "Received {0} for {1} from {2}", new Object[] {
                 event.getGHEvent(), repoUrl, event.getOrigin()
             });
+            // the topics may have changed, the next organization scans fetch them again
+            RepositorySnapshot.changed(p.getRepository().getId());
             boolean fork = p.getRepository().isFork();
             Matcher matcher = REPOSITORY_NAME_PATTERN.matcher(repoUrl);
             if (matcher.matches()) {
@@ -47,10 +47,10 @@ import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceDescriptor;
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.eclipse.jgit.lib.ObjectId;
 import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GHTagObject;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 
@@ -117,6 +117,9 @@ public class GitHubSCMFileSystem extends SCMFileSystem implements GitHubClosable
     /** {@inheritDoc} */
     @Override
     public long lastModified() throws IOException {
+        if (ObjectId.isId(ref)) {
+            return GitHubObjectCache.of(gitHub).getCommit(repo, ref).getDate();
+        }
         return repo.getCommit(ref).getCommitDate().getTime();
     }
 
@@ -278,18 +281,15 @@ public class GitHubSCMFileSystem extends SCMFileSystem implements GitHubClosable
                 if (rev == null) {
                     GHRef ref = repo.getRef(refName);
                     if ("tag".equalsIgnoreCase(ref.getObject().getType())) {
-                        GHTagObject tag = repo.getTagObject(ref.getObject().getSha());
+                        GitHubObjectCache.GitObject tag =
+                                GitHubObjectCache.of(github).getTag(repo, ref.getObject().getSha());
                         if (head instanceof GitHubTagSCMHead) {
-                            rev = new GitTagSCMRevision(
-                                    (GitHubTagSCMHead) head, tag.getObject().getSha());
+                            rev = new GitTagSCMRevision((GitHubTagSCMHead) head, tag.getTarget());
                         } else {
                             // we should never get here, but just in case, we have the information to construct
                             // the correct head, so let's do that
                             rev = new GitTagSCMRevision(
-                                    new GitHubTagSCMHead(
-                                            head.getName(),
-                                            tag.getTagger().getDate().getTime()),
-                                    tag.getObject().getSha());
+                                    new GitHubTagSCMHead(head.getName(), tag.getDate()), tag.getTarget());
                         }
                     } else {
                         rev = new AbstractGitSCMSource.SCMRevisionImpl(
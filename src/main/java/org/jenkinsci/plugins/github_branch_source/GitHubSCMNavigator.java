@@ -48,25 +48,36 @@ import hudson.init.Initializer;
 import hudson.model.Action;
 import hudson.model.Item;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import jenkins.model.Jenkins;
 import jenkins.plugins.git.traits.GitBrowserSCMSourceTrait;
 import jenkins.scm.api.SCMNavigator;
@@ -111,6 +122,8 @@ import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.HttpException;
 import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+import org.kohsuke.github.PagedSearchIterable;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -119,6 +132,29 @@ import org.kohsuke.stapler.interceptor.RequirePOST;
 
 public class GitHubSCMNavigator extends SCMNavigator {
 
+    /** The page size of the repository listings, and how often the progress of listings is reported. */
+    private static final int REPOSITORIES_PER_PAGE = 100;
+
+    /** The most results a search returns, however many repositories match. */
+    private static final int SEARCH_RESULTS_LIMIT = 1000;
+
+    /**
+     * Number of threads used to process the repositories of an organization during a scan. With more
+     * than one thread, the repositories are filtered and handed to the observer concurrently, as their
+     * pages arrive.
+     */
+    private static /* mostly final */ int repositoryScanThreads = Math.min(
+            32,
+            Math.max(
+                    1, SystemProperties.getInteger(GitHubSCMNavigator.class.getName() + ".repositoryScanThreads", 1)));
+
+    // internal for testing
+    static int setRepositoryScanThreads(int threads) {
+        int previous = repositoryScanThreads;
+        repositoryScanThreads = threads;
+        return previous;
+    }
+
     /** The owner of the repositories to navigate. */
     @NonNull
     private final String repoOwner;
@@ -984,12 +1020,23 @@ public class GitHubSCMNavigator extends SCMNavigator {
             throw new AbortException("Must specify user or organization");
         }
 
-        StandardCredentials credentials = getCredentials(observer.getContext(), true);
+        StandardCredentials credentials = Connector.selectScanCredentials(
+                apiUri,
+                getCredentials(observer.getContext(), true),
+                ScanCredentialsPoolTrait.lookupCredentials(
+                        traits, observer.getContext(), apiUri, repoOwner, listener));
         // Github client and validation
         GitHub github = Connector.connect(apiUri, credentials);
+        ScanCostModel.Scan scan = null;
+        boolean wasDeferring = false;
+        RepositorySnapshot snapshot = RepositorySnapshot.load(observer.getContext(), apiUri, repoOwner);
         try {
             Connector.checkConnectionValidity(apiUri, listener, credentials, github);
             Connector.configureLocalRateLimitChecker(listener, github);
+            // rather than hold this thread for a long rate limit wait, scan again later
+            wasDeferring = ApiRateLimitChecker.setDeferLongWaits(true);
+            // organization scans may have to wait for enough quota before they start
+            scan = ScanCostModel.begin(apiUri, observer.getContext(), github);
 
             // Input data validation
             if (credentials != null && !isCredentialValid(github)) {
@@ -1026,7 +1073,7 @@ public class GitHubSCMNavigator extends SCMNavigator {
                                 .println(GitHubConsoleNote.create(
                                         System.currentTimeMillis(),
                                         String.format("Looking up repositories of myself %s", repoOwner)));
-                        final Iterable<GHRepository> repositories;
+                        Iterable<GHRepository> repositories = null;
                         if (!gitHubSCMNavigatorContext.getTopics().isEmpty()) {
                             listener.getLogger()
                                     .println(GitHubConsoleNote.create(
@@ -1034,8 +1081,11 @@ public class GitHubSCMNavigator extends SCMNavigator {
                                             String.format(
                                                     "Looking up repositories for topics: '%s'",
                                                     gitHubSCMNavigatorContext.getTopics())));
-                            repositories = searchRepositories(github, gitHubSCMNavigatorContext);
-                        } else {
+                            repositories = searchRepositories(github, gitHubSCMNavigatorContext, listener);
+                        } else if (gitHubSCMNavigatorContext.isSearchRepositories()) {
+                            repositories = searchRepositories(github, gitHubSCMNavigatorContext, listener);
+                        }
+                        if (repositories == null) {
                             repositories = myself.listRepositories(100);
                         }
 
@@ -1045,53 +1095,16 @@ public class GitHubSCMNavigator extends SCMNavigator {
                             }
 
                             try {
-                                if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                                    witness.record(repo.getName(), false);
-                                    listener.getLogger()
-                                            .println(GitHubConsoleNote.create(
-                                                    System.currentTimeMillis(),
-                                                    String.format(
-                                                            "Skipping repository %s because it is archived",
-                                                            repo.getName())));
-
-                                } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                                    // exclude repositories which are missing one or more of the specified topics
-                                    witness.record(repo.getName(), false);
-                                } else if (!repo.isPrivate()
-                                        && gitHubSCMNavigatorContext.isExcludePublicRepositories()) {
-                                    witness.record(repo.getName(), false);
-                                    listener.getLogger()
-                                            .println(GitHubConsoleNote.create(
-                                                    System.currentTimeMillis(),
-                                                    String.format(
-                                                            "Skipping repository %s because it is public",
-                                                            repo.getName())));
-                                } else if (repo.isPrivate()
-                                        && gitHubSCMNavigatorContext.isExcludePrivateRepositories()) {
-                                    witness.record(repo.getName(), false);
-                                    listener.getLogger()
-                                            .println(GitHubConsoleNote.create(
-                                                    System.currentTimeMillis(),
-                                                    String.format(
-                                                            "Skipping repository %s because it is private",
-                                                            repo.getName())));
-                                } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                        && repo.getSource() != null) {
-                                    witness.record(repo.getName(), false);
-                                    listener.getLogger()
-                                            .println(GitHubConsoleNote.create(
-                                                    System.currentTimeMillis(),
-                                                    String.format(
-                                                            "Skipping repository %s because it is a fork",
-                                                            repo.getName())));
-                                } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
-                                    listener.getLogger()
-                                            .println(GitHubConsoleNote.create(
-                                                    System.currentTimeMillis(),
-                                                    String.format(
-                                                            "%d repositories were processed (query completed)",
-                                                            witness.getCount())));
-                                }
+                                visitRepository(
+                                        repo,
+                                        gitHubSCMNavigatorContext,
+                                        request,
+                                        sourceFactory,
+                                        witness,
+                                        snapshot,
+                                        null,
+                                        true,
+                                        listener);
                             } catch (IOException e) {
                                 listener.getLogger()
                                         .println(GitHubConsoleNote.create(
@@ -1113,7 +1126,7 @@ public class GitHubSCMNavigator extends SCMNavigator {
                             .println(GitHubConsoleNote.create(
                                     System.currentTimeMillis(),
                                     String.format("Looking up repositories of organization %s", repoOwner)));
-                    final Iterable<GHRepository> repositories;
+                    Iterable<GHRepository> repositories = null;
                     if (StringUtils.isNotBlank(gitHubSCMNavigatorContext.getTeamSlug())) {
                         // get repositories for selected team
                         listener.getLogger()
@@ -1124,7 +1137,7 @@ public class GitHubSCMNavigator extends SCMNavigator {
                                                 gitHubSCMNavigatorContext.getTeamSlug())));
                         repositories = org.getTeamBySlug(gitHubSCMNavigatorContext.getTeamSlug())
                                 .listRepositories()
-                                .withPageSize(100);
+                                .withPageSize(REPOSITORIES_PER_PAGE);
                     } else if (!gitHubSCMNavigatorContext.getTopics().isEmpty()) {
                         listener.getLogger()
                                 .println(GitHubConsoleNote.create(
@@ -1132,84 +1145,66 @@ public class GitHubSCMNavigator extends SCMNavigator {
                                         String.format(
                                                 "Looking up repositories for topics: '%s'",
                                                 gitHubSCMNavigatorContext.getTopics())));
-                        repositories = searchRepositories(github, gitHubSCMNavigatorContext);
-                    } else {
-                        repositories = org.listRepositories(100);
+                        repositories = searchRepositories(github, gitHubSCMNavigatorContext, listener);
+                    } else if (gitHubSCMNavigatorContext.isSearchRepositories()) {
+                        repositories = searchRepositories(github, gitHubSCMNavigatorContext, listener);
+                    }
+                    if (repositories == null) {
+                        repositories = org.listRepositories(REPOSITORIES_PER_PAGE);
                     }
 
-                    List<String> repoList = StreamSupport.stream(repositories.spliterator(), false)
-                            .map(GHRepository::getName)
-                            .collect(Collectors.toList());
-
-                    String repoString = String.join(",", repoList);
-
-                    listener.getLogger()
-                            .println(GitHubConsoleNote.create(
-                                    System.currentTimeMillis(),
-                                    String.format("Found %d repositories: %s", repoList.size(), repoString)));
-
-                    for (GHRepository repo : repositories) {
-                        try {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format("Processing repository: %s", repo.getName())));
-
-                            if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                                // exclude archived repositories
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is archived",
-                                                        repo.getName())));
-                            } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                                // exclude repositories which are missing one or more of the specified topics
-                                witness.record(repo.getName(), false);
-                            } else if (!repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePublicRepositories()) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is public",
-                                                        repo.getName())));
-
-                            } else if (repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePrivateRepositories()) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is private",
-                                                        repo.getName())));
-
-                            } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                    && repo.getSource() != null) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is a fork",
-                                                        repo.getName())));
-                            } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
+                    // a single pass, processing the repositories as their pages arrive
+                    int found = 0;
+                    String teamSlug = gitHubSCMNavigatorContext.getTeamSlug();
+                    Set<String> teamRepositories = StringUtils.isNotBlank(teamSlug) ? new HashSet<>() : null;
+                    try (RepositoryProcessor processor =
+                            new RepositoryProcessor(github, listener, repoOwner, repositoryScanThreads)) {
+                        for (GHRepository repo : repositories) {
+                            if (teamRepositories != null) {
+                                teamRepositories.add(repo.getFullName());
+                            }
+                            if (++found % REPOSITORIES_PER_PAGE == 0) {
                                 listener.getLogger()
                                         .println(GitHubConsoleNote.create(
                                                 System.currentTimeMillis(),
-                                                String.format(
-                                                        "%d repositories were processed (query completed)",
-                                                        witness.getCount())));
+                                                String.format("Found %d repositories so far", found)));
                             }
-                        } catch (IOException e) {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format("Error while processing repository %s", repo.getName())));
-                            Functions.printStackTrace(e, listener.getLogger());
+                            processor.submit(log -> {
+                                try {
+                                    log.getLogger()
+                                            .println(GitHubConsoleNote.create(
+                                                    System.currentTimeMillis(),
+                                                    String.format("Processing repository: %s", repo.getName())));
+
+                                    visitRepository(
+                                            repo,
+                                            gitHubSCMNavigatorContext,
+                                            request,
+                                            sourceFactory,
+                                            witness.logTo(log),
+                                            snapshot,
+                                            null,
+                                            true,
+                                            log);
+                                } catch (IOException e) {
+                                    log.getLogger()
+                                            .println(GitHubConsoleNote.create(
+                                                    System.currentTimeMillis(),
+                                                    String.format(
+                                                            "Error while processing repository %s", repo.getName())));
+                                    Functions.printStackTrace(e, log.getLogger());
+                                }
+                            });
                         }
+                        processor.await();
+                    }
+                    if (teamRepositories != null) {
+                        // the navigators checking single repositories against the team need not list it again
+                        TeamIndex.record(github, repoOwner, teamSlug, teamRepositories);
                     }
+                    listener.getLogger()
+                            .println(GitHubConsoleNote.create(
+                                    System.currentTimeMillis(), String.format("Found %d repositories", found)));
                     listener.getLogger()
                             .println(GitHubConsoleNote.create(
                                     System.currentTimeMillis(),
@@ -1240,33 +1235,17 @@ public class GitHubSCMNavigator extends SCMNavigator {
                         repositories = user.listRepositories(100);
                     }
                     for (GHRepository repo : repositories) {
-                        if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is archived", repo.getName())));
-
-                        } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                            // exclude repositories which are missing one or more of the specified topics
-                            witness.record(repo.getName(), false);
-                        } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                && repo.getSource() != null) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is a fork", repo.getName())));
-                        } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "%d repositories were processed (query completed)",
-                                                    witness.getCount())));
-                        }
+                        // the scans of a user account never excluded the public or private repositories
+                        visitRepository(
+                                repo,
+                                gitHubSCMNavigatorContext,
+                                request,
+                                sourceFactory,
+                                witness,
+                                snapshot,
+                                null,
+                                false,
+                                listener);
                     }
                     listener.getLogger()
                             .println(GitHubConsoleNote.create(
@@ -1278,16 +1257,86 @@ public class GitHubSCMNavigator extends SCMNavigator {
                 throw new AbortException(
                         repoOwner + " does not correspond to a known GitHub User Account or Organization");
             }
+        } catch (RateLimitDeferredException e) {
+            throw e.reschedule(observer.getContext(), listener);
         } finally {
+            snapshot.save();
+            if (scan != null) {
+                scan.close();
+            }
+            ApiRateLimitChecker.setDeferLongWaits(wasDeferring);
             Connector.release(github);
         }
     }
 
-    private boolean topicMatches(final GitHubSCMNavigatorContext context, final GHRepository repo, PrintStream logger)
+    /**
+     * Hands a repository to the request, unless the traits of the navigator exclude it.
+     *
+     * @param repo the repository.
+     * @param context the context of the navigator.
+     * @param request the request.
+     * @param sourceFactory creates the source of the repository.
+     * @param witness records whether the repository is proposed.
+     * @param snapshot what previous scans learned about the repositories.
+     * @param team the team the repository must be in, {@code null} if the repository comes from a
+     *     listing which only includes the repositories of the team of the navigator already.
+     * @param checkVisibility whether the public and private repositories are excluded as the traits
+     *     of the navigator tell.
+     * @param listener the listener to log to.
+     * @throws IOException if the repository could not be checked.
+     * @throws InterruptedException if interrupted.
+     */
+    private void visitRepository(
+            @NonNull GHRepository repo,
+            @NonNull GitHubSCMNavigatorContext context,
+            @NonNull GitHubSCMNavigatorRequest request,
+            @NonNull SourceFactory sourceFactory,
+            @NonNull WitnessImpl witness,
+            @NonNull RepositorySnapshot snapshot,
+            @CheckForNull TeamIndex.Team team,
+            boolean checkVisibility,
+            @NonNull TaskListener listener)
+            throws IOException, InterruptedException {
+        String reason = null;
+        if (repo.isArchived() && context.isExcludeArchivedRepositories()) {
+            reason = "it is archived";
+        } else if (repo.isFork() && context.isExcludeForkedRepositories()) {
+            // the listing tells whether a repository is a fork, unlike getSource() which fetches the repository
+            reason = "it is a fork";
+        } else if (!topicMatches(context, repo, snapshot, listener.getLogger())) {
+            // exclude repositories which are missing one or more of the specified topics, already logged
+            witness.record(repo.getName(), false);
+            return;
+        } else if (team != null && !team.includes(repo)) {
+            reason = "it is not in team " + team.getSlug();
+        } else if (checkVisibility && !repo.isPrivate() && context.isExcludePublicRepositories()) {
+            reason = "it is public";
+        } else if (checkVisibility && repo.isPrivate() && context.isExcludePrivateRepositories()) {
+            reason = "it is private";
+        }
+        if (reason != null) {
+            witness.record(repo.getName(), false);
+            listener.getLogger()
+                    .println(GitHubConsoleNote.create(
+                            System.currentTimeMillis(),
+                            String.format("Skipping repository %s because %s", repo.getName(), reason)));
+        } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
+            listener.getLogger()
+                    .println(GitHubConsoleNote.create(
+                            System.currentTimeMillis(),
+                            String.format("%d repositories were processed (query completed)", witness.getCount())));
+        }
+    }
+
+    private boolean topicMatches(
+            final GitHubSCMNavigatorContext context,
+            final GHRepository repo,
+            final RepositorySnapshot snapshot,
+            PrintStream logger)
             throws IOException {
         if (context.getTopics().isEmpty()) return true;
 
-        final List<String> topics = repo.listTopics();
+        final List<String> topics = snapshot.getTopics(repo);
         return context.getTopics().stream().allMatch(topic -> {
             if (topic.startsWith("-")) {
                 boolean contains = topics.contains(topic.substring(1));
@@ -1315,18 +1364,45 @@ public class GitHubSCMNavigator extends SCMNavigator {
         });
     }
 
-    private Iterable<GHRepository> searchRepositories(final GitHub github, final GitHubSCMNavigatorContext context) {
+    /**
+     * Searches the repositories selected by the traits of the navigator.
+     *
+     * @param github the connection.
+     * @param context the context of the navigator.
+     * @param listener the listener to log to.
+     * @return the repositories, or {@code null} if the repositories are to be listed instead, as
+     *     more of them match than a search returns.
+     */
+    @CheckForNull
+    private Iterable<GHRepository> searchRepositories(
+            final GitHub github, final GitHubSCMNavigatorContext context, final TaskListener listener) {
         final GHRepositorySearchBuilder ghRepositorySearchBuilder = github.searchRepositories();
-        context.getTopics().forEach(topic -> {
-            if (topic.startsWith("-")) ghRepositorySearchBuilder.q("-topic:" + topic.substring(1));
-            else ghRepositorySearchBuilder.topic(topic);
-        });
-        ghRepositorySearchBuilder.org(getRepoOwner());
-        if (!context.isExcludeForkedRepositories()) {
-            ghRepositorySearchBuilder.q("fork:true");
-        }
+        List<String> qualifiers = context.getSearchQualifiers(getRepoOwner());
+        qualifiers.forEach(ghRepositorySearchBuilder::q);
         ghRepositorySearchBuilder.q("sort:name-asc");
-        return ghRepositorySearchBuilder.list().withPageSize(100).asList();
+        if (!context.isSearchRepositories()) {
+            return ghRepositorySearchBuilder.list().withPageSize(100).asList();
+        }
+        listener.getLogger()
+                .println(GitHubConsoleNote.create(
+                        System.currentTimeMillis(),
+                        String.format("Looking up repositories matching '%s'", String.join(" ", qualifiers))));
+        PagedSearchIterable<GHRepository> results =
+                ghRepositorySearchBuilder.list().withPageSize(REPOSITORIES_PER_PAGE);
+        // the first page tells how many repositories match
+        PagedIterator<GHRepository> iterator = results.iterator();
+        if (iterator.hasNext() && results.getTotalCount() > SEARCH_RESULTS_LIMIT) {
+            listener.getLogger()
+                    .println(GitHubConsoleNote.create(
+                            System.currentTimeMillis(),
+                            String.format(
+                                    "%d repositories match, more than a search returns, listing all of them instead",
+                                    results.getTotalCount())));
+            return null;
+        }
+        List<GHRepository> repositories = new ArrayList<>();
+        iterator.forEachRemaining(repositories::add);
+        return repositories;
     }
 
     private GHOrganization getGhOrganization(final GitHub github) throws IOException {
@@ -1374,6 +1450,8 @@ public class GitHubSCMNavigator extends SCMNavigator {
             try (GitHubSCMNavigatorRequest request = gitHubSCMNavigatorContext.newRequest(this, observer)) {
                 SourceFactory sourceFactory = new SourceFactory(request);
                 WitnessImpl witness = new WitnessImpl(listener);
+                // a single repository, nothing worth keeping for the next scans
+                RepositorySnapshot snapshot = RepositorySnapshot.load(null, apiUri, repoOwner);
 
                 boolean githubAppAuthentication = credentials instanceof GitHubAppCredentials;
                 if (github.isAnonymous()) {
@@ -1398,53 +1476,16 @@ public class GitHubSCMNavigator extends SCMNavigator {
                         listener.getLogger().format("Looking up %s repository of myself %s%n%n", sourceName, repoOwner);
                         GHRepository repo = myself.getRepository(sourceName);
                         if (repo != null && repo.getOwnerName().equals(repoOwner)) {
-
-                            if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is archived",
-                                                        repo.getName())));
-
-                            } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                                // exclude repositories which are missing one or more of the specified topics
-                                witness.record(repo.getName(), false);
-                            } else if (!repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePublicRepositories()) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is public",
-                                                        repo.getName())));
-                            } else if (repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePrivateRepositories()) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is private",
-                                                        repo.getName())));
-
-                            } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                    && repo.getSource() != null) {
-                                witness.record(repo.getName(), false);
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "Skipping repository %s because it is a fork",
-                                                        repo.getName())));
-                            } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
-                                listener.getLogger()
-                                        .println(GitHubConsoleNote.create(
-                                                System.currentTimeMillis(),
-                                                String.format(
-                                                        "%d repositories were processed (query completed)",
-                                                        witness.getCount())));
-                            }
+                            visitRepository(
+                                    repo,
+                                    gitHubSCMNavigatorContext,
+                                    request,
+                                    sourceFactory,
+                                    witness,
+                                    snapshot,
+                                    null,
+                                    true,
+                                    listener);
                         }
                         listener.getLogger()
                                 .println(GitHubConsoleNote.create(
@@ -1460,57 +1501,18 @@ public class GitHubSCMNavigator extends SCMNavigator {
                             .format("Looking up %s repository of organization %s%n%n", sourceName, repoOwner);
                     GHRepository repo = org.getRepository(sourceName);
                     if (repo != null) {
-
-                        if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is archived", repo.getName())));
-
-                        } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                            // exclude repositories which are missing one or more of the specified topics
-                            witness.record(repo.getName(), false);
-                        } else if (StringUtils.isNotBlank(gitHubSCMNavigatorContext.getTeamSlug())
-                                && !isRepositoryVisibleToTeam(org, repo, gitHubSCMNavigatorContext.getTeamSlug())) {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is not in team %s",
-                                                    repo.getName(), gitHubSCMNavigatorContext.getTeamSlug())));
-                        } else if (!repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePublicRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is public", repo.getName())));
-                        } else if (repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePrivateRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is private", repo.getName())));
-                        } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                && repo.getSource() != null) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is a fork", repo.getName())));
-
-                        } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "%d repositories were processed (query completed)",
-                                                    witness.getCount())));
-                        }
+                        visitRepository(
+                                repo,
+                                gitHubSCMNavigatorContext,
+                                request,
+                                sourceFactory,
+                                witness,
+                                snapshot,
+                                StringUtils.isNotBlank(gitHubSCMNavigatorContext.getTeamSlug())
+                                        ? new TeamIndex.Team(github, org, gitHubSCMNavigatorContext.getTeamSlug())
+                                        : null,
+                                true,
+                                listener);
                     }
                     listener.getLogger()
                             .println(GitHubConsoleNote.create(
@@ -1531,50 +1533,16 @@ public class GitHubSCMNavigator extends SCMNavigator {
                     listener.getLogger().format("Looking up %s repository of user %s%n%n", sourceName, repoOwner);
                     GHRepository repo = user.getRepository(sourceName);
                     if (repo != null) {
-
-                        if (repo.isArchived() && gitHubSCMNavigatorContext.isExcludeArchivedRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is archived", repo.getName())));
-
-                        } else if (!topicMatches(gitHubSCMNavigatorContext, repo, listener.getLogger())) {
-                            // exclude repositories which are missing one or more of the specified topics
-                            witness.record(repo.getName(), false);
-                        } else if (!repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePublicRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is public", repo.getName())));
-                        } else if (repo.isPrivate() && gitHubSCMNavigatorContext.isExcludePrivateRepositories()) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is private", repo.getName())));
-
-                        } else if (gitHubSCMNavigatorContext.isExcludeForkedRepositories()
-                                && repo.getSource() != null) {
-                            witness.record(repo.getName(), false);
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "Skipping repository %s because it is a fork", repo.getName())));
-
-                        } else if (request.process(repo.getName(), sourceFactory, null, witness)) {
-                            listener.getLogger()
-                                    .println(GitHubConsoleNote.create(
-                                            System.currentTimeMillis(),
-                                            String.format(
-                                                    "%d repositories were processed (query completed)",
-                                                    witness.getCount())));
-                        }
+                        visitRepository(
+                                repo,
+                                gitHubSCMNavigatorContext,
+                                request,
+                                sourceFactory,
+                                witness,
+                                snapshot,
+                                null,
+                                true,
+                                listener);
                     }
                     listener.getLogger()
                             .println(GitHubConsoleNote.create(
@@ -1591,18 +1559,6 @@ public class GitHubSCMNavigator extends SCMNavigator {
         }
     }
 
-    private boolean isRepositoryVisibleToTeam(GHOrganization org, GHRepository repo, String teamSlug)
-            throws IOException {
-        final Iterable<GHRepository> repositories =
-                org.getTeamBySlug(teamSlug).listRepositories().withPageSize(100);
-        for (GHRepository item : repositories) {
-            if (repo.getFullName().equals(item.getFullName())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /** {@inheritDoc} */
     @NonNull
     @Override
@@ -1994,6 +1950,179 @@ public class GitHubSCMNavigator extends SCMNavigator {
         }
     }
 
+    /**
+     * Processes the repositories of a scan, on the scan thread or on worker threads.
+     *
+     * <p>The worker threads share the rate limit budget of the connection, and their requests count
+     * towards the scan in progress with its priority. What the processing of a repository logs on a
+     * worker thread is buffered, and replayed by the scan thread in the order of the listing, so that
+     * the scan log reads as if the repositories were processed one after the other. At most twice as
+     * many repositories as there are threads are pending at a time, so that the listing is not read
+     * ahead of the processing.
+     */
+    private static final class RepositoryProcessor implements Closeable {
+        @NonNull
+        private final GitHub github;
+
+        @NonNull
+        private final TaskListener listener;
+
+        /** The worker threads or {@code null} to process everything on the scan thread. */
+        @CheckForNull
+        private final ExecutorService executor;
+
+        /** The most repositories pending at a time. */
+        private final int window;
+
+        /** The repositories pending, in the order of the listing, only used by the scan thread. */
+        private final Deque<Processing> pending = new ArrayDeque<>();
+
+        /** The API priority of the scan, shared by the worker threads. */
+        @NonNull
+        private final ApiRateLimitChecker.Priority priority = ApiRateLimitChecker.getThreadPriority();
+
+        /** The scan the requests of the worker threads count towards. */
+        @CheckForNull
+        private final ScanCostModel.Scan scan = ScanCostModel.current();
+
+        /** The first failure of a worker thread. */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        RepositoryProcessor(
+                @NonNull GitHub github, @NonNull TaskListener listener, @NonNull String repoOwner, int threads) {
+            this.github = github;
+            this.listener = listener;
+            if (threads > 1) {
+                this.executor = Executors.newFixedThreadPool(
+                        threads,
+                        new NamingThreadFactory(
+                                new DaemonThreadFactory(), "GitHubSCMNavigator repositories " + repoOwner));
+                this.window = threads * 2;
+            } else {
+                this.executor = null;
+                this.window = 1;
+            }
+        }
+
+        /**
+         * Processes a repository, now or once a worker thread is available.
+         *
+         * @param task the processing of the repository.
+         * @throws IOException if a worker thread failed.
+         * @throws InterruptedException if interrupted.
+         */
+        void submit(@NonNull Task task) throws IOException, InterruptedException {
+            if (executor == null) {
+                task.run(listener);
+                return;
+            }
+            replay(false);
+            while (pending.size() >= window) {
+                replayFirst();
+            }
+            rethrow();
+            Processing processing = new Processing();
+            processing.result = executor.submit(() -> {
+                try {
+                    // rate limit waits are reported as they happen
+                    Connector.configureLocalRateLimitChecker(listener, github, priority);
+                    ScanCostModel.attach(scan);
+                    task.run(new StreamTaskListener(processing.log, StandardCharsets.UTF_8));
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    ApiRateLimitChecker.resetLocalChecker();
+                }
+            });
+            pending.add(processing);
+        }
+
+        /**
+         * Waits for the repositories submitted to be processed.
+         *
+         * @throws IOException if a worker thread failed.
+         * @throws InterruptedException if interrupted.
+         */
+        void await() throws IOException, InterruptedException {
+            if (executor != null) {
+                executor.shutdown();
+                replay(true);
+            }
+            rethrow();
+        }
+
+        /**
+         * Replays the logs of the repositories processed, in the order of the listing.
+         *
+         * @param all {@code true} to wait for all the repositories pending, {@code false} to stop at the
+         *     first repository still being processed.
+         * @throws InterruptedException if interrupted.
+         */
+        private void replay(boolean all) throws InterruptedException {
+            while (!pending.isEmpty() && (all || pending.peek().result.isDone())) {
+                replayFirst();
+            }
+        }
+
+        private void replayFirst() throws InterruptedException {
+            Processing processing = pending.poll();
+            if (processing == null) {
+                return;
+            }
+            try {
+                processing.result.get();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause());
+            }
+            listener.getLogger().write(processing.log.toByteArray(), 0, processing.log.size());
+        }
+
+        private void rethrow() throws IOException, InterruptedException {
+            Throwable t = failure.get();
+            if (t == null) {
+                return;
+            }
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof InterruptedException) {
+                throw (InterruptedException) t;
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /** The processing of a repository. */
+        interface Task {
+            /**
+             * Processes the repository.
+             *
+             * @param listener the listener to log to.
+             */
+            void run(@NonNull TaskListener listener) throws IOException, InterruptedException;
+        }
+
+        /** A repository being processed by a worker thread. */
+        private static final class Processing {
+            /** What the processing logged, to be replayed. */
+            private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+            private Future<?> result;
+        }
+    }
+
     /** A {@link SCMNavigatorRequest.Witness} that counts how many sources have been observed. */
     private static class WitnessImpl implements SCMNavigatorRequest.Witness {
         /** The count of repositories matches. */
@@ -2003,6 +2132,10 @@ public class GitHubSCMNavigator extends SCMNavigator {
         @NonNull
         private final TaskListener listener;
 
+        /** The witness counting the matches, {@code this} unless logging for another witness. */
+        @NonNull
+        private final WitnessImpl counter;
+
         /**
          * Constructor.
          *
@@ -2010,6 +2143,23 @@ public class GitHubSCMNavigator extends SCMNavigator {
          */
         public WitnessImpl(@NonNull TaskListener listener) {
             this.listener = listener;
+            this.counter = this;
+        }
+
+        private WitnessImpl(@NonNull TaskListener listener, @NonNull WitnessImpl counter) {
+            this.listener = listener;
+            this.counter = counter;
+        }
+
+        /**
+         * Returns a witness counting the matches with this one, but logging to another listener.
+         *
+         * @param listener the listener to log to.
+         * @return the witness.
+         */
+        @NonNull
+        WitnessImpl logTo(@NonNull TaskListener listener) {
+            return listener == this.listener ? this : new WitnessImpl(listener, counter);
         }
 
         /** {@inheritDoc} */
@@ -2017,8 +2167,8 @@ public class GitHubSCMNavigator extends SCMNavigator {
         public void record(@NonNull String name, boolean isMatch) {
             if (isMatch) {
                 listener.getLogger().format("Proposing %s%n", name);
-                synchronized (this) {
-                    count++;
+                synchronized (counter) {
+                    counter.count++;
                 }
             } else {
                 listener.getLogger().format("Ignoring %s%n", name);
@@ -2030,8 +2180,10 @@ public class GitHubSCMNavigator extends SCMNavigator {
          *
          * @return the count of repositories matches.
          */
-        public synchronized int getCount() {
-            return count;
+        public int getCount() {
+            synchronized (counter) {
+                return counter.count;
+            }
         }
     }
 
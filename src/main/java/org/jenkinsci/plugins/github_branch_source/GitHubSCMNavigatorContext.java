@@ -56,6 +56,9 @@ public class GitHubSCMNavigatorContext
     /** If true, forked repositories will be ignored. */
     private boolean excludeForkedRepositories;
 
+    /** If true, repositories will be listed through the search API, filtered by GitHub. */
+    private boolean searchRepositories;
+
     /** {@inheritDoc} */
     @NonNull
     @Override
@@ -130,4 +133,47 @@ public class GitHubSCMNavigatorContext
     public void setExcludeForkedRepositories(boolean excludeForkedRepositories) {
         this.excludeForkedRepositories = excludeForkedRepositories;
     }
+
+    /** @return True if repositories should be listed through the search API, filtered by GitHub. */
+    public boolean isSearchRepositories() {
+        return searchRepositories;
+    }
+
+    /** @param searchRepositories Set true to list repositories through the search API */
+    public void setSearchRepositories(boolean searchRepositories) {
+        this.searchRepositories = searchRepositories;
+    }
+
+    /**
+     * Compiles the selection traits into the qualifiers of a repository search, so that GitHub only
+     * returns the repositories they select. The topics and forks are always compiled, the archived and
+     * visibility exclusions only when {@link #isSearchRepositories()}. The repositories returned are
+     * still checked against every trait.
+     *
+     * @param repoOwner the organization or user whose repositories to search.
+     * @return the qualifiers.
+     */
+    @NonNull
+    public List<String> getSearchQualifiers(@NonNull String repoOwner) {
+        List<String> qualifiers = new ArrayList<>();
+        for (String topic : topics) {
+            qualifiers.add(topic.startsWith("-") ? "-topic:" + topic.substring(1) : "topic:" + topic);
+        }
+        qualifiers.add("org:" + repoOwner);
+        if (!excludeForkedRepositories) {
+            // forks are left out of search results unless asked for
+            qualifiers.add("fork:true");
+        }
+        if (searchRepositories) {
+            if (excludeArchivedRepositories) {
+                qualifiers.add("archived:false");
+            }
+            if (excludePublicRepositories && !excludePrivateRepositories) {
+                qualifiers.add("is:private");
+            } else if (excludePrivateRepositories && !excludePublicRepositories) {
+                qualifiers.add("is:public");
+            }
+        }
+        return qualifiers;
+    }
 }
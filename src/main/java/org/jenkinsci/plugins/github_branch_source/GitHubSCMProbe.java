@@ -39,7 +39,6 @@ import jenkins.scm.api.SCMProbe;
 import jenkins.scm.api.SCMProbeStat;
 import jenkins.scm.api.SCMRevision;
 import org.eclipse.jgit.lib.Constants;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHContent;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRepository;
@@ -113,16 +112,18 @@ class GitHubSCMProbe extends SCMProbe implements GitHubClosable {
         }
         if (revision instanceof AbstractGitSCMSource.SCMRevisionImpl) {
             try {
-                GHCommit commit = repo.getCommit(((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash());
-                return commit.getCommitDate().getTime();
+                return GitHubObjectCache.of(gitHub)
+                        .getCommit(repo, ((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash())
+                        .getDate();
             } catch (IOException e) {
                 // ignore
             }
         } else if (revision == null) {
             try {
                 GHRef ref = repo.getRef(this.ref);
-                GHCommit commit = repo.getCommit(ref.getObject().getSha());
-                return commit.getCommitDate().getTime();
+                return GitHubObjectCache.of(gitHub)
+                        .getCommit(repo, ref.getObject().getSha())
+                        .getDate();
             } catch (IOException e) {
                 // ignore
             }
@@ -55,24 +55,34 @@ import hudson.model.Item;
 import hudson.model.TaskListener;
 import hudson.plugins.git.extensions.GitSCMExtension;
 import hudson.scm.SCM;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectStreamException;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -81,11 +91,17 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
 import jenkins.model.Jenkins;
 import jenkins.plugins.git.AbstractGitSCMSource;
 import jenkins.plugins.git.GitTagSCMRevision;
@@ -127,7 +143,7 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.github.GHBranch;
-import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHDirection;
 import org.kohsuke.github.GHException;
 import org.kohsuke.github.GHFileNotFoundException;
 import org.kohsuke.github.GHIssueState;
@@ -135,9 +151,9 @@ import org.kohsuke.github.GHMyself;
 import org.kohsuke.github.GHOrganization;
 import org.kohsuke.github.GHPermissionType;
 import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHPullRequestQueryBuilder;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GHTagObject;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.HttpException;
@@ -180,6 +196,54 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
     private static /* mostly final */ int mergeableStatusRetries = SystemProperties.getInteger(
             GitHubSCMSource.class.getName() + ".mergeableStatusRetries", Integer.valueOf(4));
 
+    /**
+     * {@code true} to check again the pull requests whose mergeability GitHub is still computing once
+     * all the other pull requests have been processed, waiting for all of them at the same time rather
+     * than for each one in turn.
+     */
+    private static /* mostly final */ boolean deferMergeability =
+            SystemProperties.getBoolean(GitHubSCMSource.class.getName() + ".deferMergeability");
+
+    /**
+     * {@code true} to only list the pull requests updated since the previous full scan, reusing the
+     * other open pull requests from that scan.
+     */
+    private static /* mostly final */ boolean incrementalPullRequestScan =
+            SystemProperties.getBoolean(GitHubSCMSource.class.getName() + ".incrementalPullRequestScan");
+
+    /**
+     * How often (in minutes) an incremental pull request scan still lists all the open pull requests,
+     * catching up with changes that do not update a pull request, such as a new commit on its base
+     * branch.
+     */
+    private static /* mostly final */ int pullRequestReconciliationMinutes = Math.max(
+            0, SystemProperties.getInteger(GitHubSCMSource.class.getName() + ".pullRequestReconciliationMinutes", 60));
+
+    /**
+     * Number of threads used to resolve the revisions of pull requests during a scan. With more than
+     * one thread, the mergeability and merge commit of the next pull requests are resolved while the
+     * current one is processed.
+     */
+    private static /* mostly final */ int pullRequestScanThreads = Math.min(
+            32,
+            Math.max(1, SystemProperties.getInteger(GitHubSCMSource.class.getName() + ".pullRequestScanThreads", 1)));
+
+    static void setDeferMergeability(boolean deferMergeability) {
+        GitHubSCMSource.deferMergeability = deferMergeability;
+    }
+
+    static void setPullRequestScanThreads(int pullRequestScanThreads) {
+        GitHubSCMSource.pullRequestScanThreads = Math.min(32, Math.max(1, pullRequestScanThreads));
+    }
+
+    static void setIncrementalPullRequestScan(boolean incrementalPullRequestScan) {
+        GitHubSCMSource.incrementalPullRequestScan = incrementalPullRequestScan;
+    }
+
+    static void setPullRequestReconciliationMinutes(int pullRequestReconciliationMinutes) {
+        GitHubSCMSource.pullRequestReconciliationMinutes = Math.max(0, pullRequestReconciliationMinutes);
+    }
+
     //////////////////////////////////////////////////////////////////////
     // Configuration fields
     //////////////////////////////////////////////////////////////////////
@@ -276,6 +340,9 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
     /** The cache of the credentials object */
     @CheckForNull
     private transient volatile StandardCredentials credentials;
+    /** The open pull requests as of the last full listing, see {@link #incrementalPullRequestScan}. */
+    @CheckForNull
+    private transient volatile PullRequestIndex pullRequestIndex;
 
     /**
      * Used during upgrade from 1.x to 2.2.0+ only.
@@ -1006,11 +1073,31 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         // In case we are in an Organization Scan - i.e. (observer instanceof SCMHeadObserver.Any) - use the cached
         // credentials
         // https://github.com/jenkinsci/branch-api-plugin/blob/2.1169.va_f810c56e895/src/main/java/jenkins/branch/MultiBranchProjectFactory.java#L262
-        StandardCredentials credentials = getCredentials(getOwner(), !(observer instanceof SCMHeadObserver.Any));
+        StandardCredentials credentials = Connector.selectScanCredentials(
+                apiUri,
+                getCredentials(getOwner(), !(observer instanceof SCMHeadObserver.Any)),
+                ScanCredentialsPoolTrait.lookupCredentials(traits, getOwner(), apiUri, repoOwner, listener));
         // Github client and validation
         final GitHub github = Connector.connect(apiUri, credentials);
+        ScanCostModel.Scan scan = null;
+        // a scan nested in one that already defers, such as an organization scan, leaves the deferral
+        // and the rescheduling to it, whatever observer it was given
+        final boolean nested = ApiRateLimitChecker.isDeferringLongWaits();
+        boolean wasDeferring = false;
         try {
-            Connector.configureLocalRateLimitChecker(listener, github);
+            // events are served before background scans
+            Connector.configureLocalRateLimitChecker(
+                    listener,
+                    github,
+                    event == null ? ApiRateLimitChecker.Priority.BACKGROUND : ApiRateLimitChecker.Priority.INTERACTIVE);
+            if (!nested) {
+                // rather than hold this thread for a long rate limit wait, scan again later
+                wasDeferring = ApiRateLimitChecker.setDeferLongWaits(event == null);
+            }
+            if (event == null) {
+                // full scans may have to wait for enough quota before they start
+                scan = ScanCostModel.begin(apiUri, getOwner(), github);
+            }
 
             try {
                 // Input data validation
@@ -1053,6 +1140,10 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                         }
                     });
 
+                    if (request.isGraphQLScan()) {
+                        request.setGraphQLSnapshot(fetchGraphQLSnapshot(request, github, ghRepository, listener));
+                    }
+
                     if (request.isFetchPRs()) {
                         // JENKINS-56996 / JENKINS-73791
                         // PRs are one the most error prone areas for scans
@@ -1071,9 +1162,17 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                             && this.shouldRetrieve(observer, event, BranchSCMHead.class)) {
                         listener.getLogger().format("%n  Checking branches...%n");
                         int count = 0;
-                        for (final GHBranch branch : request.getBranches()) {
+                        GitHubGraphQLScan snapshot = request.getGraphQLSnapshot();
+                        Iterable<Map.Entry<String, String>> branches =
+                                snapshot != null && snapshot.getBranches() != null
+                                        ? snapshot.getBranches().entrySet()
+                                        : () -> StreamSupport.stream(
+                                                        request.getBranches().spliterator(), false)
+                                                .map(branch -> Map.entry(branch.getName(), branch.getSHA1()))
+                                                .iterator();
+                        for (final Map.Entry<String, String> branch : branches) {
                             count++;
-                            String branchName = branch.getName();
+                            String branchName = branch.getKey();
                             listener.getLogger()
                                     .format(
                                             "%n    Checking branch %s%n",
@@ -1083,7 +1182,7 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
 
                             if (request.process(
                                     head,
-                                    new SCMRevisionImpl(head, branch.getSHA1()),
+                                    new SCMRevisionImpl(head, branch.getValue()),
                                     new SCMSourceRequest.ProbeLambda<BranchSCMHead, SCMRevisionImpl>() {
                                         @NonNull
                                         @Override
@@ -1107,17 +1206,52 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                         int count = 0;
                         int errorCount = 0;
                         Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies = request.getPRStrategies();
-                        for (final GHPullRequest pr : request.getPullRequests()) {
-                            int number = pr.getNumber();
-                            try {
-                                retrievePullRequest(
-                                        apiUri, credentials, ghRepository, pr, strategies, request, listener);
-                            } catch (FileNotFoundException e) {
-                                listener.getLogger().format("%n  Error while processing pull request %d%n", number);
-                                Functions.printStackTrace(e, listener.getLogger());
-                                errorCount++;
+                        DeferredPullRequests deferred = deferMergeability ? new DeferredPullRequests() : null;
+                        try (PullRequestPreparer preparer = new PullRequestPreparer(
+                                github, ghRepository, strategies, request, listener, pullRequestScanThreads)) {
+                            for (final PullRequestPreparer.Entry entry : preparer.prepare(request.getPullRequests())) {
+                                GHPullRequest pr = entry.getPullRequest();
+                                int number = pr.getNumber();
+                                try {
+                                    retrievePullRequest(
+                                            apiUri,
+                                            credentials,
+                                            ghRepository,
+                                            pr,
+                                            strategies,
+                                            request,
+                                            listener,
+                                            entry.get(),
+                                            deferred);
+                                } catch (FileNotFoundException e) {
+                                    listener.getLogger()
+                                            .format("%n  Error while processing pull request %d%n", number);
+                                    Functions.printStackTrace(e, listener.getLogger());
+                                    errorCount++;
+                                }
+                                count++;
+                            }
+                        }
+                        if (deferred != null) {
+                            for (GHPullRequest pr : deferred.resolve(listener)) {
+                                try {
+                                    retrievePullRequest(
+                                            apiUri,
+                                            credentials,
+                                            ghRepository,
+                                            pr,
+                                            strategies,
+                                            request,
+                                            listener,
+                                            null,
+                                            deferred);
+                                } catch (FileNotFoundException e) {
+                                    listener.getLogger()
+                                            .format("%n  Error while processing pull request %d%n", pr.getNumber());
+                                    Functions.printStackTrace(e, listener.getLogger());
+                                    errorCount++;
+                                }
                             }
-                            count++;
                         }
                         listener.getLogger().format("%n  %d pull requests were processed%n", count);
                         if (errorCount > 0) {
@@ -1130,46 +1264,23 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                             && this.shouldRetrieve(observer, event, GitHubTagSCMHead.class)) {
                         listener.getLogger().format("%n  Checking tags...%n");
                         int count = 0;
-                        for (final GHRef tag : request.getTags()) {
-                            String tagName = tag.getRef();
-                            if (!tagName.startsWith(Constants.R_TAGS)) {
-                                // should never happen, but if it does we should skip
-                                continue;
-                            }
-                            tagName = tagName.substring(Constants.R_TAGS.length());
+                        GitHubGraphQLScan snapshot = request.getGraphQLSnapshot();
+                        Iterable<GitHubGraphQLScan.TagInfo> tags = snapshot != null && snapshot.getTags() != null
+                                ? snapshot.getTags()
+                                : GitHubTagResolver.resolve(
+                                        github, ghRepository, request.getTags(), observer, listener);
+                        for (final GitHubGraphQLScan.TagInfo tag : tags) {
+                            String tagName = tag.getName();
                             count++;
                             listener.getLogger()
                                     .format(
                                             "%n    Checking tag %s%n",
                                             HyperlinkNote.encodeTo(
                                                     resolvedRepositoryUrl + "/tree/" + tagName, tagName));
-                            long tagDate = 0L;
-                            String sha = tag.getObject().getSha();
-                            if ("tag".equalsIgnoreCase(tag.getObject().getType())) {
-                                // annotated tag object
-                                try {
-                                    GHTagObject tagObject =
-                                            request.getRepository().getTagObject(sha);
-                                    tagDate = tagObject.getTagger().getDate().getTime();
-                                    // we want the sha of the tagged commit not the tag object
-                                    sha = tagObject.getObject().getSha();
-                                } catch (IOException e) {
-                                    // ignore, if the tag doesn't exist, the probe will handle that correctly
-                                    // we just need enough of a date value to allow for probing
-                                }
-                            } else {
-                                try {
-                                    GHCommit commit = request.getRepository().getCommit(sha);
-                                    tagDate = commit.getCommitDate().getTime();
-                                } catch (IOException e) {
-                                    // ignore, if the tag doesn't exist, the probe will handle that correctly
-                                    // we just need enough of a date value to allow for probing
-                                }
-                            }
-                            GitHubTagSCMHead head = new GitHubTagSCMHead(tagName, tagDate);
+                            GitHubTagSCMHead head = new GitHubTagSCMHead(tagName, tag.getDate());
                             if (request.process(
                                     head,
-                                    new GitTagSCMRevision(head, sha),
+                                    new GitTagSCMRevision(head, tag.getSha()),
                                     new SCMSourceRequest.ProbeLambda<GitHubTagSCMHead, GitTagSCMRevision>() {
                                         @NonNull
                                         @Override
@@ -1197,11 +1308,50 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                     throw new AbortException(rle.getMessage());
                 }
             }
+        } catch (RateLimitDeferredException e) {
+            if (nested) {
+                throw e;
+            }
+            throw e.reschedule(getOwner(), listener);
         } finally {
+            if (scan != null) {
+                scan.close();
+            }
+            if (!nested) {
+                ApiRateLimitChecker.setDeferLongWaits(wasDeferring);
+            }
             Connector.release(github);
         }
     }
 
+    /**
+     * Fetches the {@link GitHubGraphQLScan} for a full scan.
+     *
+     * @return the snapshot or {@code null} if the scan should use the REST API.
+     */
+    @CheckForNull
+    private static GitHubGraphQLScan fetchGraphQLSnapshot(
+            @NonNull GitHubSCMSourceRequest request,
+            @NonNull GitHub github,
+            @NonNull GHRepository ghRepository,
+            @NonNull TaskListener listener) {
+        // scans scoped to specific heads (e.g. events) are already cheap over REST
+        boolean branches = request.isFetchBranches() && request.getRequestedOriginBranchNames() == null;
+        boolean pullRequests = request.isFetchPRs() && request.getRequestedPullRequestNumbers() == null;
+        boolean tags = request.isFetchTags() && request.getRequestedTagNames() == null;
+        if (github.isAnonymous() || !(branches || pullRequests || tags)) {
+            return null;
+        }
+        listener.getLogger().format("%n  Getting repository snapshot using GraphQL...%n");
+        try {
+            return GitHubGraphQLScan.fetch(github, ghRepository, branches, pullRequests, tags);
+        } catch (IOException e) {
+            listener.getLogger()
+                    .format("%n  Could not query the GraphQL API, falling back to REST: %s%n", e.getMessage());
+            return null;
+        }
+    }
+
     private static void validatePullRequests(GitHubSCMSourceRequest request) {
         // JENKINS-56996
         // This method handles the case where there would be an error
@@ -1234,7 +1384,9 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
             @NonNull final GHPullRequest pr,
             @NonNull final Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies,
             @NonNull final GitHubSCMSourceRequest request,
-            @NonNull final TaskListener listener)
+            @NonNull final TaskListener listener,
+            @CheckForNull final PreparedPullRequest prepared,
+            @CheckForNull final DeferredPullRequests deferred)
             throws IOException, InterruptedException {
 
         int number = pr.getNumber();
@@ -1251,23 +1403,29 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
             }
             return;
         }
+        if (prepared != null) {
+            prepared.replay(listener);
+        }
+        final GitHubGraphQLScan.PullRequestInfo info = graphQLPullRequestInfo(request, pr);
+        if (deferred != null
+                && !deferred.isResolving()
+                && prepared == null
+                && strategies.get(fork).contains(ChangeRequestCheckoutStrategy.MERGE)
+                && (info == null || info.getMergeable() == null)
+                && pr.getMergeable() == null) {
+            listener.getLogger().format("    Waiting for GitHub to create a merge commit, checking again later%n");
+            deferred.add(pr);
+            return;
+        }
         for (final ChangeRequestCheckoutStrategy strategy : strategies.get(fork)) {
-            final String branchName;
-            if (strategies.get(fork).size() == 1) {
-                branchName = "PR-" + number;
-            } else {
-                branchName = "PR-" + number + "-" + strategy.name().toLowerCase(Locale.ENGLISH);
-            }
+            final String branchName = pullRequestBranchName(number, strategy, strategies.get(fork).size());
 
             // PR details only needed for merge PRs
-            if (strategy == ChangeRequestCheckoutStrategy.MERGE) {
-                // The probe github will be closed along with the probe.
-                final GitHub gitHub = Connector.connect(apiUri, credentials);
-                try {
-                    ensureDetailedGHPullRequest(pr, listener, gitHub, ghRepository);
-                } finally {
-                    Connector.release(gitHub);
-                }
+            if (strategy == ChangeRequestCheckoutStrategy.MERGE
+                    && (info == null || info.getMergeable() == null)
+                    && (prepared == null || !prepared.isPrepared(branchName))
+                    && deferred == null) {
+                ensureDetailedGHPullRequest(pr, listener);
             }
 
             if (request.process(
@@ -1292,11 +1450,14 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                         @Override
                         public SCMRevision create(@NonNull PullRequestSCMHead head, @Nullable Void ignored)
                                 throws IOException, InterruptedException {
-
-                            return createPullRequestSCMRevision(pr, head, listener, ghRepository);
+                            if (prepared != null && prepared.isPrepared(head.getName())) {
+                                return prepared.getRevision(head.getName());
+                            }
+                            return createPullRequestSCMRevision(
+                                    pr, head, listener, ghRepository, GitHubObjectCache.forEndpoint(apiUri), info);
                         }
                     },
-                    new MergabilityWitness(pr, strategy, listener),
+                    new MergabilityWitness(pr, strategy, listener, info),
                     new CriteriaWitness(listener))) {
                 listener.getLogger().format("%n  Pull request %d processed (query completed)%n", number);
             }
@@ -1414,7 +1575,7 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         // Github client and validation
         final GitHub github = Connector.connect(apiUri, getCredentials(retrieveContext, false));
         try {
-            Connector.configureLocalRateLimitChecker(listener, github);
+            Connector.configureLocalRateLimitChecker(listener, github, ApiRateLimitChecker.Priority.INTERACTIVE);
             // Input data validation
             if (isBlank(repository)) {
                 throw new AbortException("No repository selected, skipping");
@@ -1487,9 +1648,11 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                         PullRequestSCMHead head =
                                 new PullRequestSCMHead(pr, headName, strategy == ChangeRequestCheckoutStrategy.MERGE);
                         if (head.isMerge()) {
-                            ensureDetailedGHPullRequest(pr, listener, github, ghRepository);
+                            ensureDetailedGHPullRequest(pr, listener);
                         }
-                        PullRequestSCMRevision prRev = createPullRequestSCMRevision(pr, head, listener, ghRepository);
+                        PullRequestSCMRevision prRev =
+                                createPullRequestSCMRevision(
+                                        pr, head, listener, ghRepository, GitHubObjectCache.of(github), null);
 
                         switch (strategy) {
                             case MERGE:
@@ -1544,26 +1707,8 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                 listener.getLogger().format("Attempting to resolve %s as a tag%n", headName);
                 GHRef tag = ghRepository.getRef("tags/" + headName);
                 if (tag != null) {
-                    long tagDate = 0L;
+                    long tagDate = GitHubTagResolver.resolve(github, ghRepository, tag).getDate();
                     String tagSha = tag.getObject().getSha();
-                    if ("tag".equalsIgnoreCase(tag.getObject().getType())) {
-                        // annotated tag object
-                        try {
-                            GHTagObject tagObject = ghRepository.getTagObject(tagSha);
-                            tagDate = tagObject.getTagger().getDate().getTime();
-                        } catch (IOException e) {
-                            // ignore, if the tag doesn't exist, the probe will handle that correctly
-                            // we just need enough of a date value to allow for probing
-                        }
-                    } else {
-                        try {
-                            GHCommit commit = ghRepository.getCommit(tagSha);
-                            tagDate = commit.getCommitDate().getTime();
-                        } catch (IOException e) {
-                            // ignore, if the tag doesn't exist, the probe will handle that correctly
-                            // we just need enough of a date value to allow for probing
-                        }
-                    }
                     listener.getLogger().format("Resolved %s as tag %s at revision %s%n", headName, headName, tagSha);
                     return new GitTagSCMRevision(new GitHubTagSCMHead(headName, tagDate), tagSha);
                 }
@@ -1659,7 +1804,7 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         try {
             try {
                 Connector.checkConnectionValidity(apiUri, listener, credentials, github);
-                Connector.configureLocalRateLimitChecker(listener, github);
+                Connector.configureLocalRateLimitChecker(listener, github, ApiRateLimitChecker.Priority.INTERACTIVE);
                 String fullName = repoOwner + "/" + repository;
                 ghRepository = github.getRepository(fullName);
                 final GHRepository ghRepository = this.ghRepository;
@@ -1668,9 +1813,11 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                     PullRequestSCMHead prhead = (PullRequestSCMHead) head;
                     GHPullRequest pr = ghRepository.getPullRequest(prhead.getNumber());
                     if (prhead.isMerge()) {
-                        ensureDetailedGHPullRequest(pr, listener, github, ghRepository);
+                        ensureDetailedGHPullRequest(pr, listener);
                     }
-                    PullRequestSCMRevision prRev = createPullRequestSCMRevision(pr, prhead, listener, ghRepository);
+                    PullRequestSCMRevision prRev =
+                            createPullRequestSCMRevision(
+                                    pr, prhead, listener, ghRepository, GitHubObjectCache.of(github), null);
                     prRev.validateMergeHash();
                     return prRev;
                 } else if (head instanceof GitHubTagSCMHead) {
@@ -1679,9 +1826,8 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                     String sha = tag.getObject().getSha();
                     if ("tag".equalsIgnoreCase(tag.getObject().getType())) {
                         // annotated tag object
-                        GHTagObject tagObject = ghRepository.getTagObject(sha);
                         // we want the sha of the tagged commit not the tag object
-                        sha = tagObject.getObject().getSha();
+                        sha = GitHubObjectCache.of(github).getTag(ghRepository, sha).getTarget();
                     }
                     return new GitTagSCMRevision(tagHead, sha);
                 } else {
@@ -1701,32 +1847,51 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
     }
 
     private static PullRequestSCMRevision createPullRequestSCMRevision(
-            GHPullRequest pr, PullRequestSCMHead prhead, TaskListener listener, GHRepository ghRepository)
+            GHPullRequest pr,
+            PullRequestSCMHead prhead,
+            TaskListener listener,
+            GHRepository ghRepository,
+            GitHubObjectCache objectCache,
+            @CheckForNull GitHubGraphQLScan.PullRequestInfo info)
             throws IOException, InterruptedException {
         String baseHash = pr.getBase().getSha();
         String prHeadHash = pr.getHead().getSha();
         String mergeHash = null;
 
         if (prhead.isMerge()) {
-            if (Boolean.FALSE.equals(pr.getMergeable())) {
+            boolean notMergeable;
+            boolean mergeable;
+            if (info != null && info.getMergeable() != null) {
+                notMergeable = !info.getMergeable();
+                mergeable = info.getMergeable();
+            } else {
+                notMergeable = Boolean.FALSE.equals(pr.getMergeable());
+                mergeable = !notMergeable && Boolean.TRUE.equals(pr.getMergeable());
+            }
+            if (notMergeable) {
                 mergeHash = PullRequestSCMRevision.NOT_MERGEABLE_HASH;
-            } else if (Boolean.TRUE.equals(pr.getMergeable())) {
-                String proposedMergeHash = pr.getMergeCommitSha();
-                GHCommit commit = null;
-                try {
-                    commit = ghRepository.getCommit(proposedMergeHash);
-                } catch (FileNotFoundException e) {
-                    listener.getLogger()
-                            .format(
-                                    "Pull request %s : github merge_commit_sha not found (%s). Close and reopen the PR to reset its merge hash.%n",
-                                    pr.getNumber(), proposedMergeHash);
-                } catch (IOException e) {
-                    throw new AbortException(
-                            "Error while retrieving pull request " + pr.getNumber() + " merge hash : " + e.toString());
+            } else if (mergeable) {
+                String proposedMergeHash;
+                List<String> parents = null;
+                if (info != null && info.getMergeCommitSha() != null) {
+                    proposedMergeHash = info.getMergeCommitSha();
+                    parents = info.getMergeCommitParents();
+                } else {
+                    proposedMergeHash = pr.getMergeCommitSha();
+                    try {
+                        parents = objectCache.getCommit(ghRepository, proposedMergeHash).getParents();
+                    } catch (FileNotFoundException e) {
+                        listener.getLogger()
+                                .format(
+                                        "Pull request %s : github merge_commit_sha not found (%s). Close and reopen the PR to reset its merge hash.%n",
+                                        pr.getNumber(), proposedMergeHash);
+                    } catch (IOException e) {
+                        throw new AbortException("Error while retrieving pull request " + pr.getNumber()
+                                + " merge hash : " + e.toString());
+                    }
                 }
 
-                if (commit != null) {
-                    List<String> parents = commit.getParentSHA1s();
+                if (parents != null) {
                     // Merge commits always merge against the most recent base commit they can detect.
                     if (parents.size() != 2) {
                         listener.getLogger()
@@ -1766,8 +1931,43 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         return new PullRequestSCMRevision(prhead, baseHash, prHeadHash, mergeHash);
     }
 
-    private static void ensureDetailedGHPullRequest(
-            GHPullRequest pr, TaskListener listener, GitHub github, GHRepository ghRepository)
+    /**
+     * Returns the GraphQL snapshot of a pull request if it is consistent with the REST listing.
+     *
+     * @return the snapshot details or {@code null} if the REST API has to be used.
+     */
+    @CheckForNull
+    private static GitHubGraphQLScan.PullRequestInfo graphQLPullRequestInfo(
+            @NonNull GitHubSCMSourceRequest request, @NonNull GHPullRequest pr) {
+        GitHubGraphQLScan snapshot = request.getGraphQLSnapshot();
+        GitHubGraphQLScan.PullRequestInfo info = snapshot == null ? null : snapshot.getPullRequest(pr.getNumber());
+        if (info == null
+                || !info.getHeadSha().equals(pr.getHead().getSha())
+                || !info.getBaseSha().equals(pr.getBase().getSha())) {
+            // not in the snapshot or updated since the snapshot was taken
+            return null;
+        }
+        return info;
+    }
+
+    /**
+     * Returns the name of the head of a pull request.
+     *
+     * @param number the pull request number.
+     * @param strategy the checkout strategy.
+     * @param strategyCount the number of strategies used for the pull request.
+     * @return the head name.
+     */
+    @NonNull
+    private static String pullRequestBranchName(
+            int number, @NonNull ChangeRequestCheckoutStrategy strategy, int strategyCount) {
+        if (strategyCount == 1) {
+            return "PR-" + number;
+        }
+        return "PR-" + number + "-" + strategy.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void ensureDetailedGHPullRequest(GHPullRequest pr, TaskListener listener)
             throws IOException, InterruptedException {
         final long sleep = 1000;
         int retryCountdown = mergeableStatusRetries;
@@ -2521,8 +2721,12 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                             .head(repo.getOwnerName() + ":" + branchName)
                             .list());
                 }
-                request.listener().getLogger().format("%n  Getting remote pull requests...%n");
                 fullScanRequested = true;
+                GitHub gitHub = request.getGitHub();
+                if (incrementalPullRequestScan && gitHub != null) {
+                    return new CacheUpdatingIterable(listIncrementally(gitHub));
+                }
+                request.listener().getLogger().format("%n  Getting remote pull requests...%n");
                 return new CacheUpdatingIterable(LazyPullRequests.this
                         .repo
                         .queryPullRequests()
@@ -2533,6 +2737,65 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
             }
         }
 
+        /**
+         * Lists the open pull requests, only asking for those updated since the previous scan when the
+         * {@link PullRequestIndex} is still current.
+         */
+        private Iterable<GHPullRequest> listIncrementally(@NonNull GitHub gitHub) throws IOException {
+            long now = System.currentTimeMillis();
+            PullRequestIndex index = pullRequestIndex;
+            if (index == null
+                    || !index.isFor(gitHub, repo)
+                    || now - index.lastFullScan >= TimeUnit.MINUTES.toMillis(pullRequestReconciliationMinutes)) {
+                request.listener().getLogger().format("%n  Getting remote pull requests...%n");
+                Map<Integer, GHPullRequest> open = new LinkedHashMap<>();
+                long highWater = 0L;
+                for (GHPullRequest pr : repo.queryPullRequests()
+                        .state(GHIssueState.OPEN)
+                        .list()
+                        .withPageSize(100)) {
+                    open.put(pr.getNumber(), pr);
+                    highWater = Math.max(highWater, updatedAt(pr));
+                }
+                pullRequestIndex = new PullRequestIndex(gitHub, repo, open, highWater, now);
+                return open.values();
+            }
+            request.listener()
+                    .getLogger()
+                    .format("%n  Getting remote pull requests updated since %s...%n", new Date(index.highWater));
+            Map<Integer, GHPullRequest> open = new TreeMap<>(Comparator.reverseOrder());
+            open.putAll(index.pullRequests);
+            long highWater = index.highWater;
+            int updated = 0;
+            for (GHPullRequest pr : repo.queryPullRequests()
+                    .state(GHIssueState.ALL)
+                    .sort(GHPullRequestQueryBuilder.Sort.UPDATED)
+                    .direction(GHDirection.DESC)
+                    .list()
+                    .withPageSize(100)) {
+                long updatedAt = updatedAt(pr);
+                // GitHub only has second precision, so read again those updated in the same second
+                if (updatedAt < index.highWater) {
+                    break;
+                }
+                if (pr.getState() == GHIssueState.OPEN) {
+                    open.put(pr.getNumber(), pr);
+                } else {
+                    open.remove(pr.getNumber());
+                }
+                highWater = Math.max(highWater, updatedAt);
+                updated++;
+            }
+            request.listener().getLogger().format("%n  %d pull requests were updated%n", updated);
+            pullRequestIndex = new PullRequestIndex(gitHub, repo, open, highWater, index.lastFullScan);
+            return open.values();
+        }
+
+        private long updatedAt(@NonNull GHPullRequest pr) throws IOException {
+            Date updatedAt = pr.getUpdatedAt();
+            return updatedAt == null ? 0L : updatedAt.getTime();
+        }
+
         @Override
         public void close() throws IOException {
             if (fullScanRequested && iterationCompleted) {
@@ -2562,6 +2825,34 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
 
             @Override
             public void observe(GHPullRequest pr) {
+                int number = pr.getNumber();
+                GitHubGraphQLScan snapshot = request.getGraphQLSnapshot();
+                GitHubGraphQLScan.PullRequestInfo info = snapshot == null ? null : snapshot.getPullRequest(number);
+                if (info != null && info.getAuthorLogin() != null) {
+                    observeAuthor(number, info);
+                } else {
+                    observeUser(pr);
+                }
+
+                pullRequestMetadataCache.put(
+                        number,
+                        new ObjectMetadataAction(
+                                pr.getTitle(), pr.getBody(), pr.getHtmlUrl().toExternalForm()));
+                pullRequestMetadataKeys.add(number);
+            }
+
+            private void observeAuthor(int number, @NonNull GitHubGraphQLScan.PullRequestInfo info) {
+                String login = info.getAuthorLogin();
+                if ("copilot".equalsIgnoreCase(login)) {
+                    pullRequestContributorCache.put(
+                            number, new ContributorMetadataAction("copilot", "copilot", "copilot@unknown.user"));
+                } else {
+                    pullRequestContributorCache.put(
+                            number, new ContributorMetadataAction(login, info.getAuthorName(), info.getAuthorEmail()));
+                }
+            }
+
+            private void observeUser(GHPullRequest pr) {
                 int number = pr.getNumber();
                 GHUser user = null;
                 try {
@@ -2593,12 +2884,6 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
                 } catch (IOException e) {
                     throw new WrappedException(e);
                 }
-
-                pullRequestMetadataCache.put(
-                        number,
-                        new ObjectMetadataAction(
-                                pr.getTitle(), pr.getBody(), pr.getHtmlUrl().toExternalForm()));
-                pullRequestMetadataKeys.add(number);
             }
 
             @Override
@@ -2609,6 +2894,45 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         }
     }
 
+    /**
+     * The open pull requests of a repository as of a previous scan, used by incremental pull request
+     * scans. The pull requests are bound to the connection they were listed with, so the index is
+     * only reused with that same connection.
+     */
+    private static final class PullRequestIndex {
+        @NonNull
+        private final WeakReference<GitHub> gitHub;
+
+        @NonNull
+        private final String repositoryUrl;
+
+        @NonNull
+        private final Map<Integer, GHPullRequest> pullRequests;
+
+        /** The most recent update time of the pull requests. */
+        private final long highWater;
+
+        /** When all the open pull requests were last listed. */
+        private final long lastFullScan;
+
+        PullRequestIndex(
+                @NonNull GitHub gitHub,
+                @NonNull GHRepository repo,
+                @NonNull Map<Integer, GHPullRequest> pullRequests,
+                long highWater,
+                long lastFullScan) {
+            this.gitHub = new WeakReference<>(gitHub);
+            this.repositoryUrl = String.valueOf(repo.getUrl());
+            this.pullRequests = Collections.unmodifiableMap(new LinkedHashMap<>(pullRequests));
+            this.highWater = highWater;
+            this.lastFullScan = lastFullScan;
+        }
+
+        boolean isFor(@NonNull GitHub gitHub, @NonNull GHRepository repo) {
+            return this.gitHub.get() == gitHub && repositoryUrl.equals(String.valueOf(repo.getUrl()));
+        }
+    }
+
     @Restricted(NoExternalUse.class)
     static class LazyBranches extends LazyIterable<GHBranch> {
         private final GitHubSCMSourceRequest request;
@@ -2787,24 +3111,317 @@ public class GitHubSCMSource extends AbstractGitSCMSource {
         }
     }
 
+    /**
+     * Resolves the revisions of the next pull requests on worker threads while the scan thread
+     * processes the current one. The pull requests are still handed to {@link
+     * SCMSourceRequest#process} one at a time and in listing order, only the lookups that
+     * {@link #createPullRequestSCMRevision} needs (including waiting for GitHub to compute the
+     * mergeability) run ahead.
+     */
+    private static final class PullRequestPreparer implements Closeable {
+        @NonNull
+        private final GitHub github;
+
+        @NonNull
+        private final GHRepository ghRepository;
+
+        @NonNull
+        private final Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies;
+
+        @NonNull
+        private final GitHubSCMSourceRequest request;
+
+        @NonNull
+        private final TaskListener listener;
+
+        /** The worker threads or {@code null} to resolve everything on the scan thread. */
+        @CheckForNull
+        private final ExecutorService executor;
+
+        /** How many pull requests may be resolved ahead of the one being processed. */
+        private final int window;
+
+        /** The API priority of the scan, shared by the worker threads. */
+        @NonNull
+        private final ApiRateLimitChecker.Priority priority = ApiRateLimitChecker.getThreadPriority();
+
+        /** The scan the requests of the worker threads count towards. */
+        @CheckForNull
+        private final ScanCostModel.Scan scan = ScanCostModel.current();
+
+        PullRequestPreparer(
+                @NonNull GitHub github,
+                @NonNull GHRepository ghRepository,
+                @NonNull Map<Boolean, Set<ChangeRequestCheckoutStrategy>> strategies,
+                @NonNull GitHubSCMSourceRequest request,
+                @NonNull TaskListener listener,
+                int threads) {
+            this.github = github;
+            this.ghRepository = ghRepository;
+            this.strategies = strategies;
+            this.request = request;
+            this.listener = listener;
+            if (threads > 1) {
+                this.executor = Executors.newFixedThreadPool(
+                        threads,
+                        new NamingThreadFactory(
+                                new DaemonThreadFactory(),
+                                "GitHubSCMSource pull requests " + ghRepository.getFullName()));
+                this.window = threads * 2;
+            } else {
+                this.executor = null;
+                this.window = 0;
+            }
+        }
+
+        /**
+         * Wraps the pull request listing.
+         *
+         * @param pullRequests the pull requests.
+         * @return the pull requests in the same order, each with its pending resolution.
+         */
+        @NonNull
+        Iterable<Entry> prepare(@NonNull Iterable<GHPullRequest> pullRequests) {
+            return () -> new Iterator<Entry>() {
+                private final Iterator<GHPullRequest> iterator = pullRequests.iterator();
+                private final Deque<Entry> pending = new ArrayDeque<>();
+
+                @Override
+                public boolean hasNext() {
+                    return !pending.isEmpty() || iterator.hasNext();
+                }
+
+                @Override
+                public Entry next() {
+                    if (executor == null) {
+                        return new Entry(iterator.next(), null);
+                    }
+                    while (pending.size() < window && iterator.hasNext()) {
+                        pending.add(submit(iterator.next()));
+                    }
+                    if (pending.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    return pending.remove();
+                }
+            };
+        }
+
+        @NonNull
+        private Entry submit(@NonNull GHPullRequest pr) {
+            try {
+                boolean fork = !ghRepository.getOwner().equals(pr.getHead().getUser());
+                Set<ChangeRequestCheckoutStrategy> prStrategies = strategies.get(fork);
+                List<PullRequestSCMHead> heads = new ArrayList<>();
+                for (ChangeRequestCheckoutStrategy strategy : prStrategies) {
+                    PullRequestSCMHead head = new PullRequestSCMHead(
+                            pr,
+                            pullRequestBranchName(pr.getNumber(), strategy, prStrategies.size()),
+                            strategy == ChangeRequestCheckoutStrategy.MERGE);
+                    // no need to resolve what will not be processed
+                    if (!request.isExcluded(head)) {
+                        heads.add(head);
+                    }
+                }
+                if (heads.isEmpty()) {
+                    return new Entry(pr, null);
+                }
+                GitHubGraphQLScan.PullRequestInfo info = graphQLPullRequestInfo(request, pr);
+                return new Entry(pr, executor.submit(() -> resolve(pr, heads, info)));
+            } catch (IOException | InterruptedException e) {
+                throw new WrappedException(e);
+            }
+        }
+
+        @NonNull
+        private PreparedPullRequest resolve(
+                @NonNull GHPullRequest pr,
+                @NonNull List<PullRequestSCMHead> heads,
+                @CheckForNull GitHubGraphQLScan.PullRequestInfo info)
+                throws IOException, InterruptedException {
+            PreparedPullRequest prepared = new PreparedPullRequest();
+            TaskListener log = new StreamTaskListener(prepared.log, StandardCharsets.UTF_8);
+            // rate limit waits are reported as they happen rather than with the pull request
+            Connector.configureLocalRateLimitChecker(listener, github, priority);
+            ScanCostModel.attach(scan);
+            try {
+                for (PullRequestSCMHead head : heads) {
+                    try {
+                        if (head.isMerge() && (info == null || info.getMergeable() == null)) {
+                            ensureDetailedGHPullRequest(pr, log);
+                        }
+                        prepared.revisions.put(
+                                head.getName(),
+                                createPullRequestSCMRevision(
+                                        pr, head, log, ghRepository, GitHubObjectCache.of(github), info));
+                    } catch (IOException e) {
+                        prepared.failures.put(head.getName(), e);
+                    }
+                }
+            } finally {
+                ApiRateLimitChecker.resetLocalChecker();
+            }
+            return prepared;
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /** A pull request and its pending resolution. */
+        static final class Entry {
+            @NonNull
+            private final GHPullRequest pr;
+
+            @CheckForNull
+            private final Future<PreparedPullRequest> future;
+
+            Entry(@NonNull GHPullRequest pr, @CheckForNull Future<PreparedPullRequest> future) {
+                this.pr = pr;
+                this.future = future;
+            }
+
+            @NonNull
+            GHPullRequest getPullRequest() {
+                return pr;
+            }
+
+            /**
+             * Waits for the resolution.
+             *
+             * @return the resolved revisions or {@code null} if they are to be resolved by the scan thread.
+             */
+            @CheckForNull
+            PreparedPullRequest get() throws IOException, InterruptedException {
+                if (future == null) {
+                    return null;
+                }
+                try {
+                    return future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * The pull requests whose mergeability GitHub was still computing when they were first checked,
+     * see {@link #deferMergeability}.
+     */
+    private static final class DeferredPullRequests {
+        private final List<GHPullRequest> pending = new ArrayList<>();
+
+        /** {@code true} once the pull requests are being processed again. */
+        private boolean resolving;
+
+        void add(@NonNull GHPullRequest pr) {
+            pending.add(pr);
+        }
+
+        boolean isResolving() {
+            return resolving;
+        }
+
+        /**
+         * Waits for GitHub to compute the mergeability of the pending pull requests, checking all of
+         * them once a second up to {@link #mergeableStatusRetries} times.
+         *
+         * @param listener the listener.
+         * @return the pending pull requests, those with a known mergeability first.
+         */
+        @NonNull
+        List<GHPullRequest> resolve(@NonNull TaskListener listener) throws IOException, InterruptedException {
+            resolving = true;
+            List<GHPullRequest> ready = new ArrayList<>();
+            int retryCountdown = mergeableStatusRetries;
+            while (!pending.isEmpty() && retryCountdown > 1) {
+                listener.getLogger()
+                        .format(
+                                "%n  Waiting for GitHub to create a merge commit for %d pull requests.  Retrying %d more times...%n",
+                                pending.size(), --retryCountdown);
+                Thread.sleep(1000);
+                for (Iterator<GHPullRequest> iterator = pending.iterator(); iterator.hasNext(); ) {
+                    GHPullRequest pr = iterator.next();
+                    if (pr.getMergeable() != null) {
+                        ready.add(pr);
+                        iterator.remove();
+                    }
+                }
+            }
+            ready.addAll(pending);
+            pending.clear();
+            return ready;
+        }
+    }
+
+    /** The revisions of a pull request resolved by a {@link PullRequestPreparer}. */
+    private static final class PreparedPullRequest {
+        /** What would have been logged while resolving the revisions. */
+        private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        private final Map<String, PullRequestSCMRevision> revisions = new HashMap<>();
+        private final Map<String, IOException> failures = new HashMap<>();
+
+        boolean isPrepared(@NonNull String headName) {
+            return revisions.containsKey(headName) || failures.containsKey(headName);
+        }
+
+        @NonNull
+        PullRequestSCMRevision getRevision(@NonNull String headName) throws IOException {
+            IOException failure = failures.get(headName);
+            if (failure != null) {
+                throw failure;
+            }
+            return revisions.get(headName);
+        }
+
+        void replay(@NonNull TaskListener listener) {
+            listener.getLogger().write(log.toByteArray(), 0, log.size());
+        }
+    }
+
     private static class MergabilityWitness
             implements SCMSourceRequest.Witness<PullRequestSCMHead, PullRequestSCMRevision> {
         private final GHPullRequest pr;
         private final ChangeRequestCheckoutStrategy strategy;
         private final TaskListener listener;
 
-        public MergabilityWitness(GHPullRequest pr, ChangeRequestCheckoutStrategy strategy, TaskListener listener) {
+        @CheckForNull
+        private final GitHubGraphQLScan.PullRequestInfo info;
+
+        public MergabilityWitness(
+                GHPullRequest pr,
+                ChangeRequestCheckoutStrategy strategy,
+                TaskListener listener,
+                @CheckForNull GitHubGraphQLScan.PullRequestInfo info) {
             this.pr = pr;
             this.strategy = strategy;
             this.listener = listener;
+            this.info = info;
         }
 
         @Override
         public void record(@NonNull PullRequestSCMHead head, PullRequestSCMRevision revision, boolean isMatch) {
             if (isMatch) {
-                Boolean mergeable;
+                Boolean mergeable = info == null ? null : info.getMergeable();
                 try {
-                    mergeable = pr.getMergeable();
+                    if (mergeable == null) {
+                        mergeable = pr.getMergeable();
+                    }
                 } catch (IOException e) {
                     throw new GitHubSCMSource.WrappedException(e);
                 }
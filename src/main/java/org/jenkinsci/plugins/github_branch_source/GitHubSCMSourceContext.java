@@ -65,6 +65,8 @@ public class GitHubSCMSourceContext extends SCMSourceContext<GitHubSCMSourceCont
     private Set<ChangeRequestCheckoutStrategy> forkPRStrategies = EnumSet.noneOf(ChangeRequestCheckoutStrategy.class);
     /** {@code true} if notifications should be disabled in this context. */
     private boolean notificationsDisabled;
+    /** {@code true} if full scans should use the GitHub GraphQL API. */
+    private boolean wantGraphQLScan;
     /**
      * Strategies used to notify Github of build status.
      *
@@ -177,6 +179,15 @@ public class GitHubSCMSourceContext extends SCMSourceContext<GitHubSCMSourceCont
         return notificationsDisabled;
     }
 
+    /**
+     * Returns {@code true} if full scans should fetch their data using the GitHub GraphQL API.
+     *
+     * @return {@code true} if full scans should fetch their data using the GitHub GraphQL API.
+     */
+    public final boolean wantGraphQLScan() {
+        return wantGraphQLScan;
+    }
+
     /**
      * Adds a requirement for branch details to any {@link GitHubSCMSourceRequest} for this context.
      *
@@ -231,6 +242,19 @@ public class GitHubSCMSourceContext extends SCMSourceContext<GitHubSCMSourceCont
         return this;
     }
 
+    /**
+     * Requests that full scans fetch their data using the GitHub GraphQL API.
+     *
+     * @param include {@code true} to add the requirement or {@code false} to leave the requirement as
+     *     is (makes simpler with method chaining)
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public GitHubSCMSourceContext wantGraphQLScan(boolean include) {
+        wantGraphQLScan = wantGraphQLScan || include;
+        return this;
+    }
+
     /**
      * Defines the {@link ChangeRequestCheckoutStrategy} instances to create for each origin pull
      * request.
@@ -63,6 +63,8 @@ public class GitHubSCMSourceRequest extends SCMSourceRequest {
     private final boolean fetchOriginPRs;
     /** {@code true} if fork pull requests need to be fetched. */
     private final boolean fetchForkPRs;
+    /** {@code true} if full scans should use the GitHub GraphQL API. */
+    private final boolean graphQLScan;
     /** The {@link ChangeRequestCheckoutStrategy} to create for each origin pull request. */
     @NonNull
     private final Set<ChangeRequestCheckoutStrategy> originPRStrategies;
@@ -112,6 +114,9 @@ public class GitHubSCMSourceRequest extends SCMSourceRequest {
     /** A deferred lookup of the permissions. */
     @CheckForNull
     private GitHubPermissionsSource permissionsSource;
+    /** The repository snapshot fetched through the GraphQL API or {@code null} if none. */
+    @CheckForNull
+    private GitHubGraphQLScan graphQLSnapshot;
 
     /**
      * Constructor.
@@ -126,6 +131,7 @@ public class GitHubSCMSourceRequest extends SCMSourceRequest {
         fetchTags = context.wantTags();
         fetchOriginPRs = context.wantOriginPRs();
         fetchForkPRs = context.wantForkPRs();
+        graphQLScan = context.wantGraphQLScan();
         originPRStrategies = fetchOriginPRs && !context.originPRStrategies().isEmpty()
                 ? Collections.unmodifiableSet(EnumSet.copyOf(context.originPRStrategies()))
                 : Collections.emptySet();
@@ -204,6 +210,15 @@ public class GitHubSCMSourceRequest extends SCMSourceRequest {
         return fetchForkPRs;
     }
 
+    /**
+     * Returns {@code true} if full scans should fetch their data using the GitHub GraphQL API.
+     *
+     * @return {@code true} if full scans should fetch their data using the GitHub GraphQL API.
+     */
+    public final boolean isGraphQLScan() {
+        return graphQLScan;
+    }
+
     /**
      * Returns the {@link ChangeRequestCheckoutStrategy} to create for each origin pull request.
      *
@@ -427,6 +442,25 @@ public class GitHubSCMSourceRequest extends SCMSourceRequest {
         this.repository = repository;
     }
 
+    /**
+     * Returns the repository snapshot fetched through the GraphQL API.
+     *
+     * @return the snapshot or {@code null} if the data comes from the REST API.
+     */
+    @CheckForNull
+    GitHubGraphQLScan getGraphQLSnapshot() {
+        return graphQLSnapshot;
+    }
+
+    /**
+     * Provides the request with a repository snapshot fetched through the GraphQL API.
+     *
+     * @param graphQLSnapshot the snapshot.
+     */
+    void setGraphQLSnapshot(@CheckForNull GitHubGraphQLScan graphQLSnapshot) {
+        this.graphQLSnapshot = graphQLSnapshot;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void close() throws IOException {
@@ -0,0 +1,246 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.StreamSupport;
+import jenkins.scm.api.SCMHeadObserver;
+import org.eclipse.jgit.lib.Constants;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+/**
+ * Resolves the tagged commit and date of tags listed through the REST API.
+ *
+ * <p>The date of a {@link GitHubTagSCMHead} comes from the tag object for annotated tags and from
+ * the commit for lightweight tags, which costs one REST request per tag. Resolved objects are kept
+ * in the {@link GitHubObjectCache} of the endpoint. When the connection is authenticated, the tags
+ * are resolved a page of up to {@link #BATCH_SIZE} at a time, with one GraphQL request for the
+ * objects of the page missing from the cache. Otherwise they are resolved one by one over REST.
+ * Either way, tags are only resolved as the result is iterated, so that a scan that completes early
+ * skips the remaining requests.
+ */
+final class GitHubTagResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubTagResolver.class.getName());
+
+    /** The maximum number of objects to resolve in a single GraphQL request. */
+    static final int BATCH_SIZE = 100;
+
+    private GitHubTagResolver() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Resolves a list of tag references, as the result is iterated.
+     *
+     * @param gitHub the connection.
+     * @param repo the repository.
+     * @param refs the tag references, references outside of {@code refs/tags/} are skipped.
+     * @param observer the observer of the scan, no further page is resolved once it stops observing.
+     * @param listener the listener.
+     * @return the tags in the order of the references.
+     */
+    @NonNull
+    static Iterable<GitHubGraphQLScan.TagInfo> resolve(
+            @NonNull GitHub gitHub,
+            @NonNull GHRepository repo,
+            @NonNull Iterable<GHRef> refs,
+            @NonNull SCMHeadObserver observer,
+            @NonNull TaskListener listener) {
+        if (gitHub.isAnonymous()) {
+            // anonymous connections cannot use GraphQL
+            return () -> StreamSupport.stream(refs.spliterator(), false)
+                    // should never happen, but if it does we should skip
+                    .filter(ref -> ref.getRef().startsWith(Constants.R_TAGS))
+                    .map(ref -> resolve(gitHub, repo, ref))
+                    .iterator();
+        }
+        return () -> new PageIterator(gitHub, repo, refs.iterator(), observer, listener);
+    }
+
+    /**
+     * Resolves a single tag reference, using the {@link GitHubObjectCache} when possible.
+     *
+     * @param gitHub the connection.
+     * @param repo the repository.
+     * @param tag the tag reference.
+     * @return the tag details, with a date of {@code 0L} if it could not be resolved.
+     */
+    @NonNull
+    static GitHubGraphQLScan.TagInfo resolve(@NonNull GitHub gitHub, @NonNull GHRepository repo, @NonNull GHRef tag) {
+        String tagName = tag.getRef().substring(Constants.R_TAGS.length());
+        String sha = tag.getObject().getSha();
+        GitHubObjectCache cache = GitHubObjectCache.of(gitHub);
+        try {
+            if ("tag".equalsIgnoreCase(tag.getObject().getType())) {
+                // annotated tag object, we want the sha of the tagged commit not the tag object
+                GitHubObjectCache.GitObject tagObject = cache.getTag(repo, sha);
+                return new GitHubGraphQLScan.TagInfo(tagName, tagObject.getTarget(), tagObject.getDate());
+            }
+            return new GitHubGraphQLScan.TagInfo(tagName, sha, cache.getCommit(repo, sha).getDate());
+        } catch (IOException e) {
+            // ignore, if the tag doesn't exist, the probe will handle that correctly
+            // we just need enough of a date value to allow for probing
+            return new GitHubGraphQLScan.TagInfo(tagName, sha, 0L);
+        }
+    }
+
+    /**
+     * Resolves objects with a single GraphQL request.
+     *
+     * @param gitHub the connection.
+     * @param repo the repository.
+     * @param cache the cache to put the resolved objects in.
+     * @param pending the SHAs of the objects, at most {@link #BATCH_SIZE}.
+     * @throws IOException if the request failed.
+     */
+    private static void resolveBatch(
+            @NonNull GitHub gitHub,
+            @NonNull GHRepository repo,
+            @NonNull GitHubObjectCache cache,
+            @NonNull Set<String> pending)
+            throws IOException {
+        StringBuilder declarations = new StringBuilder("$owner: String!, $name: String!");
+        StringBuilder selections = new StringBuilder();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("owner", repo.getOwnerName());
+        variables.put("name", repo.getName());
+        Map<String, String> aliases = new HashMap<>();
+        int i = 0;
+        for (String sha : pending) {
+            String alias = "o" + i++;
+            aliases.put(alias, sha);
+            variables.put(alias, sha);
+            declarations.append(", $").append(alias).append(": GitObjectID!");
+            selections
+                    .append(' ')
+                    .append(alias)
+                    .append(": object(oid: $")
+                    .append(alias)
+                    .append(") { __typename oid")
+                    .append(" ... on Commit { committedDate parents(first: 100) { nodes { oid } } }")
+                    .append(" ... on Tag { tagger { date } target { oid } } }");
+        }
+        JsonNode objects = Connector.executeGraphQL(
+                        gitHub,
+                        "query(" + declarations + ") { repository(owner: $owner, name: $name) {" + selections + " } }",
+                        variables)
+                .path("repository");
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            JsonNode object = objects.path(alias.getKey());
+            String type = object.path("__typename").asText();
+            GitHubGraphQLScan.TagInfo resolved = new GitHubGraphQLScan.TagInfo("", object);
+            if ("Tag".equals(type)) {
+                cache.put(
+                        repo, alias.getValue(), GitHubObjectCache.GitObject.tag(resolved.getSha(), resolved.getDate()));
+            } else if ("Commit".equals(type)) {
+                List<String> parents = new ArrayList<>();
+                for (JsonNode parent : object.path("parents").path("nodes")) {
+                    parents.add(parent.path("oid").asText());
+                }
+                cache.put(repo, alias.getValue(), GitHubObjectCache.GitObject.commit(resolved.getDate(), parents));
+            }
+            // objects that could not be resolved are left to the REST API
+        }
+    }
+
+    /** Resolves the tags a page at a time, as they are iterated. */
+    private static final class PageIterator implements Iterator<GitHubGraphQLScan.TagInfo> {
+        @NonNull
+        private final GitHub gitHub;
+
+        @NonNull
+        private final GHRepository repo;
+
+        @NonNull
+        private final Iterator<GHRef> refs;
+
+        @NonNull
+        private final SCMHeadObserver observer;
+
+        @NonNull
+        private final TaskListener listener;
+
+        @NonNull
+        private final GitHubObjectCache cache;
+
+        /** The tags of the current page not iterated yet. */
+        private final Deque<GHRef> page = new ArrayDeque<>();
+
+        /** Whether to keep using GraphQL, until a request fails. */
+        private boolean graphQL = true;
+
+        PageIterator(
+                @NonNull GitHub gitHub,
+                @NonNull GHRepository repo,
+                @NonNull Iterator<GHRef> refs,
+                @NonNull SCMHeadObserver observer,
+                @NonNull TaskListener listener) {
+            this.gitHub = gitHub;
+            this.repo = repo;
+            this.refs = refs;
+            this.observer = observer;
+            this.listener = listener;
+            this.cache = GitHubObjectCache.of(gitHub);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (page.isEmpty() && observer.isObserving()) {
+                nextPage();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public GitHubGraphQLScan.TagInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return resolve(gitHub, repo, page.removeFirst());
+        }
+
+        private void nextPage() {
+            Set<String> pending = new LinkedHashSet<>();
+            while (page.size() < BATCH_SIZE && refs.hasNext()) {
+                GHRef ref = refs.next();
+                if (!ref.getRef().startsWith(Constants.R_TAGS)) {
+                    // should never happen, but if it does we should skip
+                    continue;
+                }
+                page.add(ref);
+                String sha = ref.getObject().getSha();
+                if (cache.get(repo, sha) == null) {
+                    pending.add(sha);
+                }
+            }
+            if (!graphQL || pending.isEmpty()) {
+                return;
+            }
+            listener.getLogger().format("%n  Resolving %d tag dates...%n", pending.size());
+            try {
+                resolveBatch(gitHub, repo, cache, pending);
+            } catch (IOException e) {
+                graphQL = false;
+                LOGGER.log(Level.FINE, "Could not resolve tag dates of " + repo.getFullName() + " using GraphQL", e);
+                listener.getLogger()
+                        .format("%n  Could not query the GraphQL API, falling back to REST: %s%n", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static com.google.common.collect.Sets.immutableEnumSet;
+import static org.kohsuke.github.GHEvent.TEAM;
+import static org.kohsuke.github.GHEvent.TEAM_ADD;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
+import hudson.model.Item;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMNavigator;
+import jenkins.scm.api.SCMNavigatorOwner;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.github.extension.GHEventsSubscriber;
+import org.jenkinsci.plugins.github.extension.GHSubscriberEvent;
+import org.kohsuke.github.GHEvent;
+
+/**
+ * This subscriber manages {@link GHEvent} TEAM and TEAM_ADD, so that the navigators scoped to a team
+ * list it again after its repositories changed.
+ */
+@Extension
+public class GitHubTeamEventSubscriber extends GHEventsSubscriber {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubTeamEventSubscriber.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** The actions of TEAM events which change the repositories of the team. */
+    private static final Set<String> REPOSITORY_ACTIONS =
+            new HashSet<>(Arrays.asList("added_to_repository", "removed_from_repository", "deleted"));
+
+    @Override
+    protected boolean isApplicable(@Nullable Item item) {
+        if (item instanceof SCMNavigatorOwner) {
+            for (SCMNavigator navigator : ((SCMNavigatorOwner) item).getSCMNavigators()) {
+                if (navigator instanceof GitHubSCMNavigator) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** @return set with the TEAM and TEAM_ADD events */
+    @Override
+    protected Set<GHEvent> events() {
+        return immutableEnumSet(TEAM, TEAM_ADD);
+    }
+
+    @Override
+    protected void onEvent(GHSubscriberEvent event) {
+        try {
+            JsonNode payload = MAPPER.readTree(event.getPayload());
+            String org = payload.path("organization").path("login").asText(null);
+            String team = payload.path("team").path("slug").asText(null);
+            String action = payload.path("action").asText(null);
+            if (event.getGHEvent() == TEAM && !REPOSITORY_ACTIONS.contains(action)) {
+                LOGGER.log(Level.FINER, "Received {0} with action {1} from {2}, will be ignored", new Object[] {
+                    event.getGHEvent(), action, event.getOrigin()
+                });
+                return;
+            }
+            if (StringUtils.isBlank(org) || StringUtils.isBlank(team)) {
+                LOGGER.log(
+                        Level.FINE,
+                        "Received {0} without organization or team from {1}, will be ignored",
+                        new Object[] {event.getGHEvent(), event.getOrigin()});
+                return;
+            }
+            LOGGER.log(Level.FINE, "Received {0} for team {1} of {2} from {3}", new Object[] {
+                event.getGHEvent(), team, org, event.getOrigin()
+            });
+            TeamIndex.invalidate(org, team);
+        } catch (IOException e) {
+            LogRecord lr = new LogRecord(Level.WARNING, "Could not parse {0} event from {1} with payload: {2}");
+            lr.setParameters(new Object[] {event.getGHEvent(), event.getOrigin(), event.getPayload()});
+            lr.setThrown(e);
+            LOGGER.log(lr);
+        }
+    }
+}
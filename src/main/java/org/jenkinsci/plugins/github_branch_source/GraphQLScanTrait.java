@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import hudson.Extension;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.trait.SCMSourceContext;
+import jenkins.scm.api.trait.SCMSourceTrait;
+import jenkins.scm.api.trait.SCMSourceTraitDescriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * A {@link SCMSourceTrait} that makes full scans fetch branches, open pull requests and tags through
+ * the GitHub GraphQL API instead of one REST request per pull request author, merge commit and tag.
+ * Scans fall back to the REST API when GraphQL cannot be used, for example with anonymous access.
+ */
+public class GraphQLScanTrait extends SCMSourceTrait {
+
+    /** Constructor for stapler. */
+    @DataBoundConstructor
+    public GraphQLScanTrait() {}
+
+    /** {@inheritDoc} */
+    @Override
+    protected void decorateContext(SCMSourceContext<?, ?> context) {
+        ((GitHubSCMSourceContext) context).wantGraphQLScan(true);
+    }
+
+    /** Our descriptor. */
+    @Symbol("gitHubGraphQLScan")
+    @Extension
+    public static class DescriptorImpl extends SCMSourceTraitDescriptor {
+
+        /** {@inheritDoc} */
+        @Override
+        public String getDisplayName() {
+            return Messages.GraphQLScanTrait_displayName();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Class<? extends SCMSourceContext> getContextClass() {
+            return GitHubSCMSourceContext.class;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Class<? extends SCMSource> getSourceClass() {
+            return GitHubSCMSource.class;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A small in-memory cache of frequently requested API responses, in front of the disk cache of a
+ * connection.
+ *
+ * <p>GitHub answers with {@code max-age=0} or short lived responses, so even a disk cache hit costs
+ * a conditional request. During an organization scan or a burst of events the same repository,
+ * user and organization details are requested over and over: those responses are kept in memory
+ * for a short freshness window and served without any network round trip. Each connection, and so
+ * each credential, has its own instance. Any non-{@code GET} request clears it, as it may have
+ * changed what is cached.
+ */
+final class MemoryResponseCache implements Interceptor {
+
+    /**
+     * The requests that may be cached: repository, user and organization details. The rate limit is
+     * never cached, the checks that wait for the quota to be renewed need the current value.
+     */
+    private static final Pattern CACHEABLE_PATH =
+            Pattern.compile(".*/(repos/[^/]+/[^/]+|user|users/[^/]+|orgs/[^/]+)/?");
+
+    /** The largest response body to keep in memory. */
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    /**
+     * Rate limit headers are removed from cached responses, they would otherwise replace the more
+     * recent values of the connection.
+     */
+    private static final String[] RATE_LIMIT_HEADERS = {
+        "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset", "X-RateLimit-Used", "X-RateLimit-Resource"
+    };
+
+    @NonNull
+    private final Cache<String, CachedResponse> responses;
+
+    /**
+     * Constructor.
+     *
+     * @param freshness how long to serve a response from memory.
+     * @param maxEntries how many responses to keep.
+     */
+    MemoryResponseCache(@NonNull Duration freshness, int maxEntries) {
+        this.responses = Caffeine.newBuilder()
+                .expireAfterWrite(freshness)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            responses.invalidateAll();
+            return chain.proceed(request);
+        }
+        if (!CACHEABLE_PATH.matcher(request.url().encodedPath()).matches()) {
+            return chain.proceed(request);
+        }
+        String key = request.url() + "::" + request.header("Accept");
+        CachedResponse cached = responses.getIfPresent(key);
+        if (cached != null) {
+            return cached.toResponse(request);
+        }
+        Response response = chain.proceed(request);
+        if (response.code() == 200) {
+            ResponseBody body = response.peekBody(MAX_BODY_BYTES + 1L);
+            byte[] bytes = body.bytes();
+            if (bytes.length <= MAX_BODY_BYTES) {
+                responses.put(key, new CachedResponse(response, bytes));
+            }
+        }
+        return response;
+    }
+
+    /** A response kept in memory. */
+    private static final class CachedResponse {
+        @NonNull
+        private final Protocol protocol;
+
+        private final int code;
+
+        @NonNull
+        private final String message;
+
+        @NonNull
+        private final Headers headers;
+
+        @CheckForNull
+        private final MediaType mediaType;
+
+        @NonNull
+        private final byte[] body;
+
+        CachedResponse(@NonNull Response response, @NonNull byte[] body) {
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            Headers.Builder headers = response.headers().newBuilder();
+            for (String name : RATE_LIMIT_HEADERS) {
+                headers.removeAll(name);
+            }
+            this.headers = headers.build();
+            ResponseBody responseBody = response.body();
+            this.mediaType = responseBody == null ? null : responseBody.contentType();
+            this.body = body;
+        }
+
+        @NonNull
+        Response toResponse(@NonNull Request request) {
+            long now = System.currentTimeMillis();
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .headers(headers)
+                    .body(ResponseBody.create(body, mediaType))
+                    .sentRequestAtMillis(now)
+                    .receivedResponseAtMillis(now)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.Util;
+import hudson.model.BuildableItem;
+import hudson.model.Cause;
+import hudson.model.TaskListener;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown instead of waiting a long time for the rate limit, when the scan in progress can be resumed
+ * later.
+ *
+ * <p>Waiting for the rate limit holds the executor thread and the connection of the scan for up to an
+ * hour. Once a scan has enabled {@link ApiRateLimitChecker#setDeferLongWaits(boolean) deferral}, its
+ * background requests throw this exception instead, and the scan turns it into a new scan of its job,
+ * scheduled for when the rate limit resets. The new scan starts over, but the requests already made
+ * are served from the cache of the connection with conditional requests, which do not count against
+ * the rate limit.
+ */
+final class RateLimitDeferredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** When the rate limit allows the scan to resume. */
+    private final long resumeAt;
+
+    RateLimitDeferredException(long resumeAt) {
+        super("Waiting for the GitHub API rate limit until " + resumeAt);
+        this.resumeAt = resumeAt;
+    }
+
+    long getResumeAt() {
+        return resumeAt;
+    }
+
+    /**
+     * Schedules a new scan of a job for when the rate limit resets.
+     *
+     * @param owner the job being scanned.
+     * @param listener the listener of the scan.
+     * @return the exception aborting the scan in progress.
+     */
+    @NonNull
+    AbortException reschedule(@CheckForNull Object owner, @NonNull TaskListener listener) {
+        long now = System.currentTimeMillis();
+        long wait = Math.max(0, resumeAt - now);
+        int quietPeriod = (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(wait) + 1);
+        String message;
+        if (owner instanceof BuildableItem
+                && ((BuildableItem) owner).scheduleBuild(quietPeriod, new DeferredScanCause())) {
+            message = String.format(
+                    "Jenkins-Imposed API Limiter: Next quota in %s. Stopping the scan, it will start again then.",
+                    Util.getTimeSpanString(wait));
+        } else {
+            message = String.format(
+                    "Jenkins-Imposed API Limiter: Next quota in %s. Stopping the scan, it could not be rescheduled.",
+                    Util.getTimeSpanString(wait));
+        }
+        listener.getLogger().println(GitHubConsoleNote.create(now, message));
+        return new AbortException(message);
+    }
+
+    /** The cause of a scan resuming a deferred one. */
+    public static final class DeferredScanCause extends Cause {
+        @Override
+        public String getShortDescription() {
+            return Messages.RateLimitDeferredException_DeferredScanCause();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.ManagementLink;
+import hudson.model.PeriodicWork;
+import hudson.security.Permission;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The history of the rate limit of each connection, and of the API requests that consumed it.
+ *
+ * <p>Once a minute, the rate limit last reported to each connection of the {@link Connector} is
+ * sampled, together with the requests made since the previous sample, by {@link
+ * ApiRateLimitChecker.Priority priority}. The requests of each job are counted as well, so that the
+ * jobs using up the rate limit can be found without going through their scan logs. Only the requests
+ * which consumed quota are counted this way, all of them are counted by how they were answered, see
+ * {@link RequestAccounting}. The history is available on a management page and through the remote API
+ * of that page.
+ */
+@Extension
+@ExportedBean
+@Restricted(NoExternalUse.class)
+public class RateLimitTelemetry extends ManagementLink {
+
+    /** The number of samples to keep for each connection. */
+    private static final int MAX_SAMPLES = Math.max(
+            1, SystemProperties.getInteger(RateLimitTelemetry.class.getName() + ".samples", 24 * 60));
+
+    /** The number of jobs to report for each connection, the ones with the most requests. */
+    private static final int MAX_REPORTED_JOBS = 20;
+
+    /** The number of jobs to count the requests of for each connection. */
+    private static final int MAX_JOBS = 1000;
+
+    /** The histories, keyed by connection, forgotten a day after the connection was last used. */
+    private static final Cache<String, History> histories =
+            Caffeine.newBuilder().expireAfterAccess(Duration.ofDays(1)).build();
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-logo-github plugin-ionicons-api";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.RateLimitTelemetry_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.RateLimitTelemetry_Description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "githubRateLimits";
+    }
+
+    @NonNull
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.SYSTEM_READ;
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    public Api getApi() {
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+        return new Api(this);
+    }
+
+    /**
+     * Returns the history of each connection.
+     *
+     * @return the histories, by endpoint and credentials.
+     */
+    @Exported
+    public List<History> getConnections() {
+        List<History> result = new ArrayList<>(histories.asMap().values());
+        result.sort(Comparator.comparing(History::getApiUrl).thenComparing(History::getCredentialsId));
+        return result;
+    }
+
+    /**
+     * Counts an API request which consumed quota.
+     *
+     * @param key the connection, {@code null} if the request is not made through a pooled connection.
+     * @param priority the priority of the request.
+     * @param jobName the job the request is made for, {@code null} if unknown.
+     */
+    static void requested(
+            @CheckForNull String key, @NonNull ApiRateLimitChecker.Priority priority, @CheckForNull String jobName) {
+        if (key == null) {
+            return;
+        }
+        histories.get(key, k -> new History()).requested(priority, jobName);
+    }
+
+    /**
+     * Counts an answered API request.
+     *
+     * @param key the connection, {@code null} if the request is not made through a pooled connection.
+     * @param outcome how the request was answered.
+     */
+    static void answered(@CheckForNull String key, @NonNull RequestAccounting.Outcome outcome) {
+        if (key == null) {
+            return;
+        }
+        histories.get(key, k -> new History()).answered(outcome);
+    }
+
+    /**
+     * Records the rate limit of a connection.
+     *
+     * @param key the connection.
+     * @param apiUrl the API endpoint of the connection.
+     * @param credentialsId the credentials of the connection, {@code null} if anonymous.
+     * @param rateLimit the last rate limit reported to the connection.
+     */
+    static void sample(
+            @NonNull String key,
+            @NonNull String apiUrl,
+            @CheckForNull String credentialsId,
+            @NonNull GHRateLimit.Record rateLimit) {
+        histories.get(key, k -> new History()).sample(apiUrl, credentialsId, rateLimit);
+    }
+
+    /** Samples the rate limit of the connections. */
+    @Extension
+    public static class Sampler extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void doRun() {
+            Connector.sampleRateLimits();
+        }
+    }
+
+    /** The history of a connection. */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class History {
+        private volatile String apiUrl = "";
+
+        @CheckForNull
+        private volatile String credentialsId;
+
+        /** The requests of each priority since the last sample. */
+        private final LongAdder[] pending = newCounters(ApiRateLimitChecker.Priority.values().length);
+
+        /** The requests of each priority since the history started. */
+        private final LongAdder[] total = newCounters(ApiRateLimitChecker.Priority.values().length);
+
+        /** The requests answered each way since the history started. */
+        private final LongAdder[] outcomes = newCounters(RequestAccounting.Outcome.values().length);
+
+        /** The requests of each job since the history started. */
+        private final Cache<String, LongAdder> jobs = Caffeine.newBuilder().maximumSize(MAX_JOBS).build();
+
+        private final Deque<Sample> samples = new ArrayDeque<>();
+
+        private static LongAdder[] newCounters(int length) {
+            LongAdder[] result = new LongAdder[length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new LongAdder();
+            }
+            return result;
+        }
+
+        void requested(@NonNull ApiRateLimitChecker.Priority priority, @CheckForNull String jobName) {
+            pending[priority.ordinal()].increment();
+            total[priority.ordinal()].increment();
+            if (jobName != null) {
+                jobs.get(jobName, k -> new LongAdder()).increment();
+            }
+        }
+
+        void answered(@NonNull RequestAccounting.Outcome outcome) {
+            outcomes[outcome.ordinal()].increment();
+        }
+
+        void sample(
+                @NonNull String apiUrl, @CheckForNull String credentialsId, @NonNull GHRateLimit.Record rateLimit) {
+            this.apiUrl = apiUrl;
+            this.credentialsId = credentialsId;
+            long[] requests = new long[pending.length];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = pending[i].sumThenReset();
+            }
+            Sample sample = new Sample(
+                    System.currentTimeMillis(),
+                    rateLimit.getLimit(),
+                    rateLimit.getRemaining(),
+                    rateLimit.getResetDate().getTime(),
+                    requests);
+            synchronized (samples) {
+                samples.addLast(sample);
+                while (samples.size() > MAX_SAMPLES) {
+                    samples.removeFirst();
+                }
+            }
+        }
+
+        @Exported
+        public String getApiUrl() {
+            return apiUrl;
+        }
+
+        @Exported
+        public String getCredentialsId() {
+            return StringUtils.defaultString(credentialsId, "anonymous");
+        }
+
+        /**
+         * Returns the samples, oldest first.
+         *
+         * @return the samples.
+         */
+        @Exported
+        public List<Sample> getSamples() {
+            synchronized (samples) {
+                return new ArrayList<>(samples);
+            }
+        }
+
+        /**
+         * Returns the latest samples, newest first.
+         *
+         * @param count the number of samples.
+         * @return the samples.
+         */
+        public List<Sample> getLatestSamples(int count) {
+            List<Sample> result = new ArrayList<>();
+            synchronized (samples) {
+                for (Sample sample : (Iterable<Sample>) samples::descendingIterator) {
+                    if (result.size() >= count) {
+                        break;
+                    }
+                    result.add(sample);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the requests of each priority since the history started.
+         *
+         * @return the number of requests of each priority, highest first.
+         */
+        @Exported
+        public List<Count> getRequests() {
+            List<Count> result = new ArrayList<>();
+            for (ApiRateLimitChecker.Priority priority : ApiRateLimitChecker.Priority.values()) {
+                result.add(new Count(priority.name(), total[priority.ordinal()].sum()));
+            }
+            return result;
+        }
+
+        /**
+         * Returns the requests answered each way since the history started, whether they consumed quota
+         * or not.
+         *
+         * @return the number of requests answered from a cache, with {@code 304 Not Modified}, and with a
+         *     full response.
+         */
+        @Exported
+        public List<Count> getOutcomes() {
+            List<Count> result = new ArrayList<>();
+            for (RequestAccounting.Outcome outcome : RequestAccounting.Outcome.values()) {
+                result.add(new Count(outcome.name(), outcomes[outcome.ordinal()].sum()));
+            }
+            return result;
+        }
+
+        /**
+         * Returns the jobs which made the most requests since the history started.
+         *
+         * @return the number of requests of each job, most first.
+         */
+        @Exported
+        public List<Count> getJobs() {
+            List<Count> result = new ArrayList<>();
+            for (Map.Entry<String, LongAdder> entry : jobs.asMap().entrySet()) {
+                result.add(new Count(entry.getKey(), entry.getValue().sum()));
+            }
+            result.sort(Comparator.comparingLong(Count::getCount).reversed());
+            return result.size() > MAX_REPORTED_JOBS ? result.subList(0, MAX_REPORTED_JOBS) : result;
+        }
+    }
+
+    /** The rate limit of a connection at some point in time. */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class Sample {
+        private final long timestamp;
+        private final int limit;
+        private final int remaining;
+        private final long reset;
+        private final long[] requests;
+
+        Sample(long timestamp, int limit, int remaining, long reset, @NonNull long[] requests) {
+            this.timestamp = timestamp;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.reset = reset;
+            this.requests = requests;
+        }
+
+        @Exported
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getTime() {
+            return Instant.ofEpochMilli(timestamp).toString();
+        }
+
+        @Exported
+        public int getLimit() {
+            return limit;
+        }
+
+        @Exported
+        public int getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * Returns when the rate limit is renewed.
+         *
+         * @return the time of the reset, in milliseconds since the epoch.
+         */
+        @Exported
+        public long getReset() {
+            return reset;
+        }
+
+        public String getResetTime() {
+            return Instant.ofEpochMilli(reset).toString();
+        }
+
+        /**
+         * Returns the requests of each priority since the previous sample.
+         *
+         * @return the number of requests of each priority, highest first.
+         */
+        @Exported
+        public List<Count> getRequests() {
+            List<Count> result = new ArrayList<>();
+            for (ApiRateLimitChecker.Priority priority : ApiRateLimitChecker.Priority.values()) {
+                result.add(new Count(priority.name(), requests[priority.ordinal()]));
+            }
+            return result;
+        }
+    }
+
+    /** A number of requests. */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class Count {
+        @NonNull
+        private final String name;
+
+        private final long count;
+
+        Count(@NonNull String name, long count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        /**
+         * Returns what made the requests.
+         *
+         * @return the priority, job name or outcome.
+         */
+        @Exported
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getCount() {
+            return count;
+        }
+    }
+}
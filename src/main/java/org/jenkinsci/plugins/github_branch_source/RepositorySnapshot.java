@@ -0,0 +1,287 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Item;
+import hudson.util.AtomicFileWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.github.GHRepository;
+
+/**
+ * What the previous scans of a navigator learned about its repositories, beyond what the repository
+ * listing tells.
+ *
+ * <p>The repository listing tells whether a repository is archived, private or a fork, but finding
+ * what its topics are takes one more request per repository. The snapshot keeps these details,
+ * keyed by repository id, and saves them with the owner of the navigator. A rescan
+ * reuses them for the repositories not updated since they were learned, as told by the {@code
+ * updated_at} of the listing, and fetches them again for the others. Every {@link
+ * #RECONCILIATION_HOURS} hours, each detail is fetched again whether the repository was updated or
+ * not. A repository {@link #changed changed} according to a webhook event is fetched again on the
+ * next scan, whatever its {@code updated_at}.
+ *
+ * <p>All the repositories are still handed to the observer on each scan, since the repositories not
+ * seen by a scan are considered removed.
+ */
+final class RepositorySnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(RepositorySnapshot.class.getName());
+
+    /** How long the details of a repository are trusted, {@code 0} disables the snapshot. */
+    static final long RECONCILIATION_HOURS =
+            Math.max(0, SystemProperties.getInteger(RepositorySnapshot.class.getName() + ".reconciliationHours", 24));
+
+    /**
+     * When repositories were last changed according to webhook events, by repository id. Repository ids
+     * of different GitHub servers may clash, at worst fetching the details of a repository once more.
+     */
+    private static final Cache<Long, Long> changes = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofHours(RECONCILIATION_HOURS))
+            .maximumSize(100_000)
+            .build();
+
+    /** The file the snapshot is saved to or {@code null} if it is kept for the current scan only. */
+    @CheckForNull
+    private final File file;
+
+    /** The details learned by previous scans, by repository id. */
+    private final Map<Long, Entry> previous = new HashMap<>();
+
+    /** The details used by the current scan, by repository id. */
+    private final Map<Long, Entry> current = new ConcurrentHashMap<>();
+
+    private RepositorySnapshot(@CheckForNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the snapshot of a navigator.
+     *
+     * @param owner the owner of the navigator, {@code null} to keep the snapshot for the current scan
+     *     only.
+     * @param apiUri the API endpoint, {@code null} for GitHub.
+     * @param repoOwner the organization or user the navigator scans.
+     * @return the snapshot.
+     */
+    @NonNull
+    static RepositorySnapshot load(@CheckForNull Item owner, @CheckForNull String apiUri, @NonNull String repoOwner) {
+        File dir = owner == null ? null : owner.getRootDir();
+        if (dir == null || RECONCILIATION_HOURS == 0) {
+            return new RepositorySnapshot(null);
+        }
+        RepositorySnapshot snapshot = new RepositorySnapshot(getFile(dir, apiUri, repoOwner));
+        snapshot.load();
+        return snapshot;
+    }
+
+    /**
+     * Names the file of a snapshot after a hash of what it is about, as the organization is free text.
+     *
+     * @param dir the directory of the owner of the navigator.
+     * @param apiUri the API endpoint, {@code null} for GitHub.
+     * @param repoOwner the organization or user the navigator scans.
+     * @return the file, {@code null} to keep the snapshot in memory only.
+     */
+    @CheckForNull
+    private static File getFile(@NonNull File dir, @CheckForNull String apiUri, @NonNull String repoOwner) {
+        String key =
+                (apiUri == null ? GitHubSCMSource.GITHUB_URL : apiUri) + "::" + repoOwner.toLowerCase(Locale.ENGLISH);
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(key.getBytes(StandardCharsets.UTF_8));
+            return new File(
+                    dir,
+                    "github-repositories." + Base64.getUrlEncoder().withoutPadding().encodeToString(sha256.digest())
+                            + ".txt");
+        } catch (NoSuchAlgorithmException e) {
+            // keep the snapshot for the current scan only
+            return null;
+        }
+    }
+
+    /**
+     * Records that a repository was changed, so that the next scans fetch its details again.
+     *
+     * @param repositoryId the id of the repository.
+     */
+    static void changed(long repositoryId) {
+        changes.put(repositoryId, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the topics of a repository.
+     *
+     * @param repo the repository, from a listing.
+     * @return the topics.
+     * @throws IOException if the topics could not be fetched.
+     */
+    @NonNull
+    List<String> getTopics(@NonNull GHRepository repo) throws IOException {
+        Entry entry = lookup(repo);
+        if (entry.topics != null) {
+            return entry.topics;
+        }
+        List<String> topics = Collections.unmodifiableList(new ArrayList<>(repo.listTopics()));
+        current.put(repo.getId(), entry.withTopics(topics));
+        return topics;
+    }
+
+    /**
+     * Returns the details known about a repository, those of a previous scan if still valid.
+     *
+     * @param repo the repository.
+     * @return the details.
+     * @throws IOException if the repository could not be read.
+     */
+    @NonNull
+    private Entry lookup(@NonNull GHRepository repo) throws IOException {
+        long id = repo.getId();
+        Entry entry = current.get(id);
+        if (entry != null) {
+            return entry;
+        }
+        Date updatedAt = repo.getUpdatedAt();
+        long updated = updatedAt == null ? -1 : updatedAt.getTime();
+        long now = System.currentTimeMillis();
+        Entry known;
+        synchronized (previous) {
+            known = previous.get(id);
+        }
+        Long changed = changes.getIfPresent(id);
+        if (known != null
+                && updated >= 0
+                && known.updated == updated
+                && (changed == null || changed < known.checked)
+                && now - known.checked < TimeUnit.HOURS.toMillis(RECONCILIATION_HOURS)) {
+            entry = known;
+        } else {
+            entry = new Entry(updated, now, null);
+        }
+        Entry existing = current.putIfAbsent(id, entry);
+        return existing == null ? entry : existing;
+    }
+
+    private void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            synchronized (previous) {
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = StringUtils.split(line, ' ');
+                    if (fields.length < 4) {
+                        continue;
+                    }
+                    previous.put(
+                            Long.parseLong(fields[0]),
+                            new Entry(
+                                    Long.parseLong(fields[1]),
+                                    Long.parseLong(fields[2]),
+                                    "?".equals(fields[3])
+                                            ? null
+                                            : Collections.unmodifiableList(
+                                                    Arrays.asList(fields).subList(4, fields.length))));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Could not load the repository snapshot from " + file, e);
+        }
+    }
+
+    /**
+     * Saves what the current scan learned, together with what previous scans learned about the
+     * repositories the current scan did not look at, as long as it is valid.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<Long, Entry> entries;
+        synchronized (previous) {
+            entries = new HashMap<>(previous);
+        }
+        entries.putAll(current);
+        entries.values().removeIf(entry -> now - entry.checked >= TimeUnit.HOURS.toMillis(RECONCILIATION_HOURS));
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+            try {
+                for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                    entry.getValue().write(entry.getKey(), writer);
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save the repository snapshot to " + file, e);
+        }
+    }
+
+    /** The details of a repository. */
+    private static final class Entry {
+        /** The {@code updated_at} of the repository when the details were learned. */
+        private final long updated;
+
+        /** When the details were first learned. */
+        private final long checked;
+
+        @CheckForNull
+        private final List<String> topics;
+
+        Entry(long updated, long checked, @CheckForNull List<String> topics) {
+            this.updated = updated;
+            this.checked = checked;
+            this.topics = topics;
+        }
+
+        @NonNull
+        Entry withTopics(@NonNull List<String> topics) {
+            return new Entry(updated, checked, topics);
+        }
+
+        void write(long id, @NonNull Writer writer) throws IOException {
+            writer.write(id + " " + updated + " " + checked);
+            if (topics == null) {
+                writer.write(" ?");
+            } else {
+                writer.write(" =");
+                for (String topic : topics) {
+                    writer.write(' ');
+                    writer.write(topic);
+                }
+            }
+            writer.write('\n');
+        }
+    }
+}
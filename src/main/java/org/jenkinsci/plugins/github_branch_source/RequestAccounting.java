@@ -0,0 +1,99 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Tells, for each API request of a connection, whether it consumed quota, and charges only those
+ * requests to the rate limit checker of the calling thread.
+ *
+ * <p>The rate limit checker runs before each request, when it is not known yet whether the request
+ * will be answered by one of the caches of the connection, or by GitHub with {@code 304 Not
+ * Modified}, neither of which counts against the primary rate limit. This interceptor, the first
+ * application interceptor of the connection, classifies each request once it is answered: a
+ * {@link Outcome#HIT hit} never reached GitHub, a {@link Outcome#REVALIDATED revalidated} request
+ * was answered with {@code 304}, and any other request is a {@link Outcome#MISS miss}. What GitHub
+ * actually answered is recorded by {@link Network}, the last network interceptor of the connection,
+ * as the shared response cache turns a {@code 304} into a full response before the disk cache sees it.
+ */
+final class RequestAccounting implements Interceptor {
+
+    /** How a request was answered. */
+    enum Outcome {
+        /** Answered from a cache without reaching GitHub. */
+        HIT,
+        /** Answered by GitHub with {@code 304 Not Modified}, free of quota. */
+        REVALIDATED,
+        /** Answered by GitHub with a full response, or failed, consuming quota. */
+        MISS
+    }
+
+    /** Identifies the connection, {@code null} if the connection is not pooled. */
+    @CheckForNull
+    private final String key;
+
+    private final LongAdder[] counts = new LongAdder[Outcome.values().length];
+
+    RequestAccounting(@CheckForNull String key) {
+        this.key = key;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Answer answer = new Answer();
+        Request request = chain.request().newBuilder().tag(Answer.class, answer).build();
+        Outcome outcome = Outcome.MISS;
+        try {
+            Response response = chain.proceed(request);
+            outcome = answer.code < 0 ? Outcome.HIT : answer.code == 304 ? Outcome.REVALIDATED : Outcome.MISS;
+            return response;
+        } finally {
+            counts[outcome.ordinal()].increment();
+            RateLimitTelemetry.answered(key, outcome);
+            ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+            if (checker != null) {
+                checker.charge(outcome);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests answered some way.
+     *
+     * @param outcome how the requests were answered.
+     * @return the number of requests.
+     */
+    long getCount(@NonNull Outcome outcome) {
+        return counts[outcome.ordinal()].sum();
+    }
+
+    /** What GitHub answered to a request, if it reached GitHub. */
+    private static final class Answer {
+        /** The status code, {@code -1} if the request did not reach GitHub. */
+        private volatile int code = -1;
+    }
+
+    /** Records what GitHub answered, for the {@link RequestAccounting} of the connection. */
+    static final class Network implements Interceptor {
+
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            Answer answer = chain.request().tag(Answer.class);
+            if (answer != null) {
+                answer.code = response.code();
+            }
+            return response;
+        }
+    }
+}
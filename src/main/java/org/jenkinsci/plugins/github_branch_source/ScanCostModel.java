@@ -0,0 +1,252 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.model.Item;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.model.Jenkins;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+
+/**
+ * Learns how many API requests the scans of each job make, so that {@link
+ * ApiRateLimitChecker#ThrottlePredictive} can hold a whole scan back until the quota covers it.
+ *
+ * <p>Throttling individual requests stalls a scan halfway through, while it holds its connection and
+ * executor. Instead, a scan waits before it starts until the remaining quota covers its expected
+ * cost on top of the remaining expected cost of the scans already running with the same
+ * credentials. The cost of a job is an exponentially weighted average of the requests its past
+ * scans made, including the requests of the scans nested in it, such as the repository scans of an
+ * organization scan. Only the outermost scan of a thread waits.
+ */
+final class ScanCostModel {
+
+    /** The weight of the last scan in the average cost of a job. */
+    private static final double WEIGHT = 0.5;
+
+    /** The number of jobs to remember the cost of. */
+    private static final int MAX_JOBS = 10000;
+
+    private static final Random ENTROPY = new Random();
+
+    /** The average cost of each job, keyed by endpoint and job name. */
+    private static final Cache<String, Double> costs = Caffeine.newBuilder().maximumSize(MAX_JOBS).build();
+
+    /** The scans in progress. */
+    private static final Map<Scan, Boolean> running = new ConcurrentHashMap<>();
+
+    private ScanCostModel() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Starts a scan, waiting for enough quota first if the {@link
+     * ApiRateLimitChecker#ThrottlePredictive} strategy is selected.
+     *
+     * <p>The rate limit checker of the thread must have been configured.
+     *
+     * @param apiUri the API endpoint.
+     * @param owner the job being scanned.
+     * @param gitHub the connection of the scan.
+     * @return the scan, to be closed when it completes, or {@code null} if the job is unknown.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @CheckForNull
+    static Scan begin(@CheckForNull String apiUri, @CheckForNull Item owner, @NonNull GitHub gitHub)
+            throws InterruptedException {
+        ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+        if (owner == null || checker == null) {
+            return null;
+        }
+        Scan parent = checker.getScan();
+        Scan scan = new Scan(Util.fixNull(apiUri) + "::" + owner.getFullName(), owner.getFullName(), gitHub, parent);
+        if (parent == null && isActive()) {
+            awaitQuota(scan, checker);
+        }
+        running.put(scan, Boolean.TRUE);
+        checker.setScan(scan);
+        return scan;
+    }
+
+    /**
+     * Returns the scan the requests of this thread count towards.
+     *
+     * @return the scan or {@code null} if none.
+     */
+    @CheckForNull
+    static Scan current() {
+        ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+        return checker == null ? null : checker.getScan();
+    }
+
+    /**
+     * Counts the requests of this thread towards a scan started by another thread.
+     *
+     * <p>The rate limit checker of the thread must have been configured.
+     *
+     * @param scan the scan or {@code null} if none.
+     */
+    static void attach(@CheckForNull Scan scan) {
+        ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+        if (checker != null) {
+            checker.setScan(scan);
+        }
+    }
+
+    private static boolean isActive() {
+        return Jenkins.getInstanceOrNull() != null
+                && GitHubConfiguration.get().getApiRateLimitChecker() == ApiRateLimitChecker.ThrottlePredictive;
+    }
+
+    /**
+     * Returns the expected cost of a job.
+     *
+     * @param key the endpoint and job name.
+     * @return the expected number of requests, {@code 0} if the job was never scanned.
+     */
+    static long getExpectedCost(@NonNull String key) {
+        Double cost = costs.getIfPresent(key);
+        return cost == null ? 0 : Math.round(cost);
+    }
+
+    private static void awaitQuota(@NonNull Scan scan, @NonNull ApiRateLimitChecker.LocalChecker checker)
+            throws InterruptedException {
+        long expected = getExpectedCost(scan.key);
+        while (expected > 0) {
+            GHRateLimit.Record rateLimit = scan.gitHub.lastRateLimit().getCore();
+            try {
+                if (rateLimit instanceof GHRateLimit.UnknownLimitRecord || rateLimit.isExpired()) {
+                    // rate limit requests do not count against the rate limit
+                    rateLimit = scan.gitHub.getRateLimit().getCore();
+                }
+            } catch (IOException e) {
+                // let the request level checks take over
+                return;
+            }
+            long committed = getCommittedCost(scan.gitHub);
+            if (isCovered(expected, rateLimit, committed)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long wait = Math.max(0, rateLimit.getResetDate().getTime() - now) + ENTROPY.nextInt(1000);
+            checker.checkDeferral(now + wait, now);
+            checker.writeLog(String.format(
+                    "Jenkins-Imposed API Limiter: This scan is expected to make %d API requests, the current quota"
+                            + " has %d remaining of which %d are expected to be used by scans in progress. Next"
+                            + " quota of %d in %s. Waiting for it before starting the scan.",
+                    expected,
+                    rateLimit.getRemaining(),
+                    committed,
+                    rateLimit.getLimit(),
+                    Util.getTimeSpanString(wait)));
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Returns the remaining expected cost of the outermost scans in progress with a connection.
+     *
+     * @param gitHub the connection.
+     * @return the number of requests these scans are still expected to make.
+     */
+    private static long getCommittedCost(@NonNull GitHub gitHub) {
+        long committed = 0;
+        for (Scan other : running.keySet()) {
+            if (other.gitHub == gitHub && other.parent == null) {
+                committed += other.getRemainingCost();
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Checks whether a quota covers the expected cost of a scan.
+     *
+     * @param expected the expected number of requests of the scan.
+     * @param rateLimit the quota.
+     * @param committed the number of requests the scans in progress are still expected to make.
+     * @return {@code true} if the scan may start.
+     */
+    static boolean isCovered(long expected, @NonNull GHRateLimit.Record rateLimit, long committed) {
+        int buffer = ApiRateLimitChecker.calculateBuffer(rateLimit.getLimit());
+        // a scan larger than half of the quota would wait forever for a quiet hour
+        long needed = Math.min(expected, (rateLimit.getLimit() - buffer) / 2);
+        return needed <= rateLimit.getRemaining() - buffer - committed;
+    }
+
+    /** A scan in progress. */
+    static final class Scan implements AutoCloseable {
+        @NonNull
+        private final String key;
+
+        @NonNull
+        private final String jobName;
+
+        @NonNull
+        private final GitHub gitHub;
+
+        /** The scan this one is nested in, {@code null} for the outermost scan. */
+        @CheckForNull
+        private final Scan parent;
+
+        private final long expected;
+
+        private final AtomicLong requests = new AtomicLong();
+
+        Scan(
+                @NonNull String key, @NonNull String jobName, @NonNull GitHub gitHub, @CheckForNull Scan parent) {
+            this.key = key;
+            this.jobName = jobName;
+            this.gitHub = gitHub;
+            this.parent = parent;
+            this.expected = getExpectedCost(key);
+        }
+
+        /** Counts a request of this scan and of the scans it is nested in. */
+        void requested() {
+            for (Scan scan = this; scan != null; scan = scan.parent) {
+                scan.requests.incrementAndGet();
+            }
+        }
+
+        /**
+         * Returns the full name of the job being scanned.
+         *
+         * @return the job name.
+         */
+        @NonNull
+        String getJobName() {
+            return jobName;
+        }
+
+        long getRequests() {
+            return requests.get();
+        }
+
+        private long getRemainingCost() {
+            return Math.max(0, expected - requests.get());
+        }
+
+        /** Records the cost of the scan and restores the scan it was nested in. */
+        @Override
+        public void close() {
+            running.remove(this);
+            costs.asMap()
+                    .merge(
+                            key,
+                            (double) requests.get(),
+                            (previous, current) -> previous * (1 - WEIGHT) + current * WEIGHT);
+            ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+            if (checker != null && checker.getScan() == this) {
+                checker.setScan(parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.trait.SCMSourceContext;
+import jenkins.scm.api.trait.SCMSourceTrait;
+import jenkins.scm.api.trait.SCMSourceTraitDescriptor;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * A {@link SCMSourceTrait} that lets scans use other credentials, interchangeable with the scan
+ * credentials, so that large organizations are not limited to the hourly quota of a single token or
+ * GitHub App installation.
+ *
+ * <p>Each scan uses the credentials, among the scan credentials and these, with the most remaining
+ * quota when it starts. When set on an organization folder, the organization scan and each of the
+ * repository scans select their credentials on their own.
+ */
+public class ScanCredentialsPoolTrait extends SCMSourceTrait {
+
+    /** The credentials. */
+    @NonNull
+    private final List<Entry> credentials;
+
+    /**
+     * Stapler constructor.
+     *
+     * @param credentials the credentials.
+     */
+    @DataBoundConstructor
+    public ScanCredentialsPoolTrait(@CheckForNull List<Entry> credentials) {
+        this.credentials = credentials == null ? Collections.emptyList() : new ArrayList<>(credentials);
+    }
+
+    @NonNull
+    public List<Entry> getCredentials() {
+        return Collections.unmodifiableList(credentials);
+    }
+
+    /**
+     * Returns the ids of the credentials.
+     *
+     * @return the credentials ids.
+     */
+    @NonNull
+    public List<String> getCredentialsIdList() {
+        List<String> result = new ArrayList<>();
+        for (Entry entry : credentials) {
+            if (StringUtils.isNotBlank(entry.getCredentialsId())) {
+                result.add(entry.getCredentialsId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the credentials of the pool configured among some traits.
+     *
+     * @param traits the traits.
+     * @param context the context of the credentials.
+     * @param apiUri the API endpoint.
+     * @param repoOwner the organization or user the credentials are for.
+     * @param listener the listener to report the credentials which are not found to.
+     * @return the credentials found, empty if there is no pool.
+     */
+    @NonNull
+    static List<StandardCredentials> lookupCredentials(
+            @NonNull Iterable<?> traits,
+            @CheckForNull Item context,
+            @CheckForNull String apiUri,
+            @NonNull String repoOwner,
+            @NonNull TaskListener listener) {
+        for (Object trait : traits) {
+            if (trait instanceof ScanCredentialsPoolTrait) {
+                List<StandardCredentials> result = new ArrayList<>();
+                for (String credentialsId : ((ScanCredentialsPoolTrait) trait).getCredentialsIdList()) {
+                    StandardCredentials credentials =
+                            Connector.lookupScanCredentials(context, apiUri, credentialsId, repoOwner);
+                    if (credentials != null) {
+                        result.add(credentials);
+                    } else {
+                        listener.getLogger()
+                                .format("Pooled scan credentials %s not found, scanning without them%n", credentialsId);
+                    }
+                }
+                return result;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /** Credentials of the pool. */
+    public static class Entry extends AbstractDescribableImpl<Entry> {
+
+        @NonNull
+        private final String credentialsId;
+
+        /**
+         * Stapler constructor.
+         *
+         * @param credentialsId the credentials id.
+         */
+        @DataBoundConstructor
+        public Entry(@CheckForNull String credentialsId) {
+            this.credentialsId = StringUtils.defaultString(credentialsId).trim();
+        }
+
+        @NonNull
+        public String getCredentialsId() {
+            return credentialsId;
+        }
+
+        /** Our descriptor. */
+        @Extension
+        public static class DescriptorImpl extends Descriptor<Entry> {
+
+            /** {@inheritDoc} */
+            @NonNull
+            @Override
+            public String getDisplayName() {
+                return Messages.ScanCredentialsPoolTrait_Entry_displayName();
+            }
+
+            /**
+             * Populates the drop-down list of credentials.
+             *
+             * @param context the context.
+             * @param apiUri the end-point.
+             * @param credentialsId the existing selection;
+             * @return the drop-down list.
+             */
+            @Restricted(NoExternalUse.class) // stapler
+            public ListBoxModel doFillCredentialsIdItems(
+                    @CheckForNull @AncestorInPath Item context,
+                    @QueryParameter String apiUri,
+                    @QueryParameter String credentialsId) {
+                if (context == null
+                        ? !Jenkins.get().hasPermission(Jenkins.MANAGE)
+                        : !context.hasPermission(Item.EXTENDED_READ)) {
+                    return new StandardListBoxModel().includeCurrentValue(credentialsId);
+                }
+                return Connector.listScanCredentials(context, apiUri);
+            }
+
+            /**
+             * Validates the selected credentials.
+             *
+             * @param context the context.
+             * @param apiUri the end-point.
+             * @param repoOwner the organization or user.
+             * @param value the credentials id.
+             * @return the validation results.
+             */
+            @RequirePOST
+            @Restricted(NoExternalUse.class) // stapler
+            public FormValidation doCheckCredentialsId(
+                    @CheckForNull @AncestorInPath Item context,
+                    @QueryParameter String apiUri,
+                    @QueryParameter String repoOwner,
+                    @QueryParameter String value) {
+                if (StringUtils.isBlank(value)) {
+                    return FormValidation.error(Messages.ScanCredentialsPoolTrait_Entry_credentialsRequired());
+                }
+                return Connector.checkScanCredentials(context, apiUri, value, repoOwner);
+            }
+        }
+    }
+
+    /** Our descriptor. */
+    @Symbol("gitHubScanCredentialsPool")
+    @Extension
+    public static class DescriptorImpl extends SCMSourceTraitDescriptor {
+
+        /** {@inheritDoc} */
+        @Override
+        public String getDisplayName() {
+            return Messages.ScanCredentialsPoolTrait_displayName();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Class<? extends SCMSourceContext> getContextClass() {
+            return GitHubSCMSourceContext.class;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Class<? extends SCMSource> getSourceClass() {
+            return GitHubSCMSource.class;
+        }
+    }
+}
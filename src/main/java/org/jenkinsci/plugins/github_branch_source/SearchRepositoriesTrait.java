@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import jenkins.scm.api.trait.SCMNavigatorContext;
+import jenkins.scm.api.trait.SCMNavigatorTrait;
+import jenkins.scm.api.trait.SCMNavigatorTraitDescriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * A {@link SCMNavigatorTrait} that lists the repositories through the search API, with the archived,
+ * visibility, fork and topic exclusions of the navigator as search qualifiers, so that GitHub only
+ * returns the repositories the navigator would select. When more repositories match than a search
+ * returns, the repositories are listed as without this trait.
+ */
+public class SearchRepositoriesTrait extends SCMNavigatorTrait {
+
+    /** Constructor for stapler. */
+    @DataBoundConstructor
+    public SearchRepositoriesTrait() {}
+
+    /** {@inheritDoc} */
+    @Override
+    protected void decorateContext(SCMNavigatorContext<?, ?> context) {
+        super.decorateContext(context);
+        ((GitHubSCMNavigatorContext) context).setSearchRepositories(true);
+    }
+
+    /** Our descriptor. */
+    @Symbol("gitHubSearchRepositories")
+    @Extension
+    public static class DescriptorImpl extends SCMNavigatorTraitDescriptor {
+
+        @Override
+        public Class<? extends SCMNavigatorContext> getContextClass() {
+            return GitHubSCMNavigatorContext.class;
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.SearchRepositoriesTrait_displayName();
+        }
+    }
+}
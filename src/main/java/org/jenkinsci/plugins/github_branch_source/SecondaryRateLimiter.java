@@ -0,0 +1,302 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Keeps the requests to an endpoint within the secondary rate limits of GitHub.
+ *
+ * <p>On top of the hourly quota, GitHub limits how many requests run concurrently and how fast
+ * content, such as commit statuses, is created. Going over these limits is answered with a {@code 403}
+ * or {@code 429} response, usually with a {@code Retry-After} header, and repeating the requests
+ * without waiting can get the integration banned. This interceptor:
+ *
+ * <ul>
+ *   <li>holds all the requests to the endpoint until the {@code Retry-After} delay has passed, or
+ *       backs off exponentially from one minute when GitHub does not say how long to wait;
+ *   <li>limits the requests in flight, halving the limit on each secondary rate limit response and
+ *       raising it by one each time as many requests as the limit succeeded, up to the {@link
+ *       Endpoint#getMaxConcurrentRequests() configured maximum};
+ *   <li>spaces the requests that create content once they hit a limit, doubling the interval on
+ *       each limit response and shortening it as they succeed.
+ * </ul>
+ *
+ * <p>Until GitHub reports a secondary rate limit, only the configured maximum applies. Retrying is
+ * left to the GitHub API client, see {@link Connector#SECONDARY_LIMIT}.
+ */
+final class SecondaryRateLimiter implements Interceptor {
+
+    /** How long to wait after a secondary rate limit response without {@code Retry-After}. */
+    private static final long DEFAULT_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** The longest backoff without {@code Retry-After}. */
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /** The interval between content creation requests after the first limit response. */
+    private static final long MIN_CREATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    /** The longest interval between content creation requests. */
+    private static final long MAX_CREATION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** How much each successful content creation request shortens the interval. */
+    private static final long CREATION_INTERVAL_STEP_MILLIS = 50;
+
+    /** How much of the body of a {@code 403} response to read, looking for the kind of limit. */
+    private static final long MAX_PEEK_BYTES = 4096;
+
+    @NonNull
+    private final String apiUrl;
+
+    /** The configured limit of requests in flight, {@link Integer#MAX_VALUE} if none. */
+    private final int maxLimit;
+
+    /** The current limit of requests in flight. */
+    private int limit;
+
+    private int inFlight;
+
+    /** The successful requests since the limit was last raised. */
+    private int successes;
+
+    /** The secondary rate limit responses since the last successful request. */
+    private int consecutiveLimits;
+
+    /** No request may start before this time. */
+    private long pausedUntil;
+
+    /** The interval between content creation requests, {@code 0} until they hit a limit. */
+    private long creationInterval;
+
+    /** No content creation request may start before this time. */
+    private long nextCreation;
+
+    private final LongAdder secondaryLimits = new LongAdder();
+    private final LongAdder retryAfters = new LongAdder();
+    private final LongAdder backoffs = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param apiUrl the API endpoint.
+     * @param maxConcurrentRequests the configured limit of requests in flight, {@code null} if none.
+     */
+    SecondaryRateLimiter(@NonNull String apiUrl, @CheckForNull Integer maxConcurrentRequests) {
+        this.apiUrl = apiUrl;
+        this.maxLimit = maxConcurrentRequests == null ? Integer.MAX_VALUE : maxConcurrentRequests;
+        this.limit = maxLimit;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean creation = createsContent(request);
+        acquire(creation);
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+        long retryAfter = getSecondaryLimitDelay(response);
+        synchronized (this) {
+            if (retryAfter >= 0) {
+                limited(creation, retryAfter);
+            } else if (response.code() < 400) {
+                succeeded(creation);
+            }
+            inFlight--;
+            notifyAll();
+        }
+        return response;
+    }
+
+    /** Requests other than reads may create content, and count against the content creation limits. */
+    private static boolean createsContent(@NonNull Request request) {
+        String method = request.method();
+        return !"GET".equals(method) && !"HEAD".equals(method) && !request.url().encodedPath().endsWith("/graphql");
+    }
+
+    private synchronized void acquire(boolean creation) throws InterruptedIOException {
+        boolean waited = false;
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                long until = Math.max(pausedUntil, creation ? nextCreation : 0);
+                if (until > now) {
+                    waited = true;
+                    wait(until - now);
+                } else if (inFlight >= limit) {
+                    waited = true;
+                    wait();
+                } else {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to call " + apiUrl);
+        }
+        if (creation && creationInterval > 0) {
+            nextCreation = System.currentTimeMillis() + creationInterval;
+        }
+        if (waited) {
+            delayed.increment();
+        }
+        inFlight++;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void limited(boolean creation, long retryAfter) {
+        secondaryLimits.increment();
+        consecutiveLimits++;
+        long delay;
+        if (retryAfter > 0) {
+            retryAfters.increment();
+            delay = retryAfter;
+        } else {
+            backoffs.increment();
+            delay = Math.min(MAX_BACKOFF_MILLIS, DEFAULT_BACKOFF_MILLIS << Math.min(10, consecutiveLimits - 1));
+        }
+        pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + delay);
+        // multiplicative decrease, from what was actually in flight when there was no limit
+        int decreased = Math.max(1, Math.min(limit, inFlight) / 2);
+        if (decreased < limit) {
+            limit = decreased;
+            successes = 0;
+            decreases.increment();
+        }
+        if (creation) {
+            creationInterval = Math.min(
+                    MAX_CREATION_INTERVAL_MILLIS, Math.max(MIN_CREATION_INTERVAL_MILLIS, creationInterval * 2));
+        }
+    }
+
+    private void succeeded(boolean creation) {
+        consecutiveLimits = 0;
+        // additive increase, by one each time as many requests as the limit succeeded
+        if (limit < maxLimit && ++successes >= limit) {
+            limit++;
+            successes = 0;
+            increases.increment();
+        }
+        if (creation && creationInterval > 0) {
+            creationInterval = Math.max(0, creationInterval - CREATION_INTERVAL_STEP_MILLIS);
+        }
+    }
+
+    /**
+     * Checks whether a response reports a secondary rate limit.
+     *
+     * @param response the response.
+     * @return how long GitHub asks to wait, {@code 0} if it does not say, {@code -1} if the response
+     *     does not report a secondary rate limit.
+     * @throws IOException if the body of the response cannot be read.
+     */
+    static long getSecondaryLimitDelay(@NonNull Response response) throws IOException {
+        int code = response.code();
+        if (code != 403 && code != 429) {
+            return -1;
+        }
+        if ("0".equals(response.header("X-RateLimit-Remaining"))) {
+            // the primary rate limit, handled by the rate limit checker and handler
+            return -1;
+        }
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            return Math.max(0, parseRetryAfter(retryAfter));
+        }
+        if (code == 429) {
+            return 0;
+        }
+        String message = response.peekBody(MAX_PEEK_BYTES).string().toLowerCase(Locale.ENGLISH);
+        return message.contains("secondary rate limit") || message.contains("abuse") ? 0 : -1;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header.
+     *
+     * @param value the header, either a number of seconds or a date.
+     * @return the delay in milliseconds, {@code 0} if the header cannot be parsed.
+     */
+    static long parseRetryAfter(@NonNull String value) {
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            // not a number of seconds
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant()
+                            .toEpochMilli()
+                    - System.currentTimeMillis();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of requests that may be in flight.
+     *
+     * @return the current limit, {@link Integer#MAX_VALUE} if there is none.
+     */
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the interval between content creation requests.
+     *
+     * @return the interval in milliseconds, {@code 0} if they are not spaced.
+     */
+    synchronized long getCreationInterval() {
+        return creationInterval;
+    }
+
+    synchronized int getAvailablePermits() {
+        return limit == Integer.MAX_VALUE ? -1 : Math.max(0, limit - inFlight);
+    }
+
+    long getSecondaryLimitCount() {
+        return secondaryLimits.sum();
+    }
+
+    long getRetryAfterCount() {
+        return retryAfters.sum();
+    }
+
+    long getBackoffCount() {
+        return backoffs.sum();
+    }
+
+    long getDecreaseCount() {
+        return decreases.sum();
+    }
+
+    long getIncreaseCount() {
+        return increases.sum();
+    }
+
+    long getDelayedCount() {
+        return delayed.sum();
+    }
+}
@@ -0,0 +1,220 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ByteString;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.github.config.GitHubServerConfig;
+
+/**
+ * A cache of public API responses shared by all the connections to an endpoint.
+ *
+ * <p>The disk cache of a connection belongs to a single credential, so when many credentials scan
+ * the same public repositories each of them keeps its own copy of the same responses. This network
+ * interceptor keeps one copy of those responses per endpoint instead, storing each distinct body
+ * once, keyed by its SHA-256, and keeps them out of the disk caches of the connections.
+ *
+ * <p>A shared response is never served as is: the request is always sent with the {@code ETag} of
+ * the shared response, using the credential of the connection, and the shared body is only used
+ * when GitHub answers {@code 304 Not Modified}, i.e. confirms that this credential may read that
+ * exact content. Conditional requests answered with {@code 304} do not count against the rate
+ * limit. Only responses GitHub marks as public, or which belong to a repository seen to be public,
+ * are shared.
+ */
+final class SharedResponseCache implements Interceptor {
+
+    private static final Map<String, SharedResponseCache> caches = new ConcurrentHashMap<>();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Matches the path of a repository resource, capturing the owner, name and rest of the path. */
+    private static final Pattern REPOSITORY_PATH = Pattern.compile(".*/repos/([^/]+)/([^/]+)(/.*)?");
+
+    /** The largest response body to share, larger ones stay in the disk cache of the connection. */
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    /** The number of repositories to remember the visibility of. */
+    private static final int MAX_REPOSITORIES = 10000;
+
+    private final long maxBytes;
+
+    /** The shared responses, keyed by URL and media type. */
+    @NonNull
+    private final Cache<String, Entry> entries;
+
+    /** The distinct bodies of the shared responses, keyed by SHA-256. */
+    @NonNull
+    private final Cache<String, byte[]> bodies;
+
+    /** The repositories known to be public, as lower case {@code owner/name}. */
+    @NonNull
+    private final Cache<String, Boolean> publicRepositories;
+
+    private SharedResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.body.length + key.length())
+                .build();
+        this.bodies = Caffeine.newBuilder().weakValues().build();
+        this.publicRepositories = Caffeine.newBuilder().maximumSize(MAX_REPOSITORIES).build();
+    }
+
+    /**
+     * Returns the shared cache of an endpoint.
+     *
+     * @param apiUri the API endpoint or {@code null} for GitHub.
+     * @param maxBytes the size of the cache, in bytes.
+     * @return the cache.
+     */
+    @NonNull
+    static SharedResponseCache forApiUrl(@CheckForNull String apiUri, long maxBytes) {
+        String apiUrl = StringUtils.removeEnd(StringUtils.defaultIfBlank(apiUri, GitHubServerConfig.GITHUB_URL), "/");
+        return caches.compute(apiUrl, (key, existing) -> existing != null && existing.maxBytes == maxBytes
+                ? existing
+                : new SharedResponseCache(maxBytes));
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+        String key = request.url() + "::" + request.header("Accept");
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || request.header("If-None-Match") != null) {
+            // the disk cache of the connection has its own copy, let it revalidate that one
+            return share(key, request, chain.proceed(request));
+        }
+        Request conditional = request.newBuilder().header("If-None-Match", entry.etag).build();
+        Response response = chain.proceed(conditional);
+        if (response.code() == 304) {
+            return entry.toResponse(response);
+        }
+        return share(key, request, response);
+    }
+
+    @NonNull
+    private Response share(@NonNull String key, @NonNull Request request, @NonNull Response response)
+            throws IOException {
+        String etag = response.header("ETag");
+        if (response.code() != 200 || etag == null) {
+            return response;
+        }
+        byte[] body = response.peekBody(MAX_BODY_BYTES + 1L).bytes();
+        if (body.length > MAX_BODY_BYTES) {
+            return response;
+        }
+        Matcher repository = REPOSITORY_PATH.matcher(request.url().encodedPath());
+        String repositoryName = null;
+        if (repository.matches()) {
+            repositoryName = (repository.group(1) + "/" + repository.group(2)).toLowerCase(Locale.ENGLISH);
+            if (StringUtils.defaultString(repository.group(3)).length() <= 1) {
+                learnVisibility(repositoryName, response, body);
+            }
+        }
+        boolean isPublic = response.cacheControl().isPublic()
+                || repositoryName != null && publicRepositories.getIfPresent(repositoryName) != null;
+        if (!isPublic) {
+            return response;
+        }
+        byte[] shared = bodies.get(ByteString.of(body).sha256().hex(), hash -> body);
+        entries.put(key, new Entry(etag, response, shared));
+        // one shared copy is enough, keep it out of the disk cache of the connection
+        return response.newBuilder().header("Cache-Control", "no-store").build();
+    }
+
+    private void learnVisibility(@NonNull String repositoryName, @NonNull Response response, @NonNull byte[] body) {
+        try (InputStream stream = "gzip".equalsIgnoreCase(response.header("Content-Encoding"))
+                ? new GZIPInputStream(new ByteArrayInputStream(body))
+                : new ByteArrayInputStream(body)) {
+            JsonNode visibility = MAPPER.readTree(stream).path("private");
+            if (visibility.isBoolean() && !visibility.booleanValue()) {
+                publicRepositories.put(repositoryName, Boolean.TRUE);
+            } else {
+                publicRepositories.invalidate(repositoryName);
+            }
+        } catch (IOException e) {
+            // not a repository, or not JSON, nothing to learn
+        }
+    }
+
+    /** A shared response. */
+    private static final class Entry {
+        @NonNull
+        private final String etag;
+
+        @NonNull
+        private final String message;
+
+        @NonNull
+        private final Headers headers;
+
+        @CheckForNull
+        private final MediaType mediaType;
+
+        @NonNull
+        private final byte[] body;
+
+        Entry(@NonNull String etag, @NonNull Response response, @NonNull byte[] body) {
+            this.etag = etag;
+            this.message = response.message();
+            this.headers = response.headers();
+            ResponseBody responseBody = response.body();
+            this.mediaType = responseBody == null ? null : responseBody.contentType();
+            this.body = body;
+        }
+
+        /**
+         * Builds the response to a request GitHub confirmed the shared response for.
+         *
+         * @param notModified the {@code 304} response of GitHub.
+         * @return the shared response, updated with the headers of the {@code 304} response.
+         */
+        @NonNull
+        Response toResponse(@NonNull Response notModified) {
+            notModified.close();
+            Headers.Builder merged = headers.newBuilder();
+            Headers updates = notModified.headers();
+            for (String name : updates.names()) {
+                if (!name.equalsIgnoreCase("Content-Length")
+                        && !name.equalsIgnoreCase("Content-Encoding")
+                        && !name.equalsIgnoreCase("Content-Type")) {
+                    merged.removeAll(name);
+                    for (String value : updates.values(name)) {
+                        merged.add(name, value);
+                    }
+                }
+            }
+            merged.set("Cache-Control", "no-store");
+            return notModified
+                    .newBuilder()
+                    .code(200)
+                    .message(message)
+                    .headers(merged.build())
+                    .body(ResponseBody.create(body, mediaType))
+                    .build();
+        }
+    }
+}
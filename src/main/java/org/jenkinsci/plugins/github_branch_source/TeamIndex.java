@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import jenkins.util.SystemProperties;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTeam;
+import org.kohsuke.github.GitHub;
+
+/**
+ * The repositories of organization teams, shared by the navigators scoped to a team.
+ *
+ * <p>Checking that a repository is in the team of a navigator takes a listing of the team
+ * repositories, which several navigators of the same organization, or the events of each repository,
+ * would otherwise make again and again. The index keeps the full names of the repositories of each
+ * team, by endpoint, organization, team and credentials, since what a team listing returns depends
+ * on the credentials. A listing is trusted, for the repositories in it as for those missing from it,
+ * for {@link #REFRESH_MINUTES} minutes, or until a {@code team} or {@code team_add} webhook event
+ * tells that the repositories of the team changed. Listing a team again is cheap when it did not
+ * change, as each page is revalidated by the HTTP cache of the connection.
+ */
+final class TeamIndex {
+
+    /** How long a team listing is trusted, {@code 0} disables the index. */
+    static final long REFRESH_MINUTES =
+            Math.max(0, SystemProperties.getInteger(TeamIndex.class.getName() + ".refreshMinutes", 10));
+
+    /** The number of teams to remember the repositories of. */
+    private static final int MAX_TEAMS = 1000;
+
+    /** The full names of the repositories of each team. */
+    private static final Cache<Key, Set<String>> teams = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(REFRESH_MINUTES))
+            .maximumSize(MAX_TEAMS)
+            .build();
+
+    private TeamIndex() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Records the repositories of a team, as listed by a scan.
+     *
+     * @param github the connection the team was listed with.
+     * @param org the organization.
+     * @param teamSlug the team.
+     * @param fullNames the full names of the repositories of the team.
+     */
+    static void record(
+            @NonNull GitHub github,
+            @NonNull String org,
+            @NonNull String teamSlug,
+            @NonNull Collection<String> fullNames) {
+        Key key = Key.of(github, org, teamSlug);
+        if (key != null && REFRESH_MINUTES > 0) {
+            teams.put(key, Collections.unmodifiableSet(new HashSet<>(fullNames)));
+        }
+    }
+
+    /**
+     * Forgets the repositories of a team, for all the endpoints and credentials.
+     *
+     * @param org the organization.
+     * @param teamSlug the team.
+     */
+    static void invalidate(@NonNull String org, @NonNull String teamSlug) {
+        String login = org.toLowerCase(Locale.ENGLISH);
+        String slug = teamSlug.toLowerCase(Locale.ENGLISH);
+        teams.asMap().keySet().removeIf(key -> key.org.equals(login) && key.team.equals(slug));
+    }
+
+    /** Forgets everything, for tests. */
+    static void invalidateAll() {
+        teams.invalidateAll();
+    }
+
+    /** A team the repositories of a navigator must be in. */
+    static final class Team {
+
+        @NonNull
+        private final GitHub github;
+
+        @NonNull
+        private final GHOrganization org;
+
+        @NonNull
+        private final String slug;
+
+        Team(@NonNull GitHub github, @NonNull GHOrganization org, @NonNull String slug) {
+            this.github = github;
+            this.org = org;
+            this.slug = slug;
+        }
+
+        @NonNull
+        String getSlug() {
+            return slug;
+        }
+
+        /**
+         * Tells whether a repository is in the team, listing the team unless it is known.
+         *
+         * @param repo the repository.
+         * @return {@code true} if the repository is in the team.
+         * @throws IOException if the team could not be listed.
+         */
+        boolean includes(@NonNull GHRepository repo) throws IOException {
+            Key key = REFRESH_MINUTES > 0 ? Key.of(github, org.getLogin(), slug) : null;
+            Set<String> fullNames = key == null ? null : teams.getIfPresent(key);
+            if (fullNames != null) {
+                return fullNames.contains(repo.getFullName());
+            }
+            GHTeam team = org.getTeamBySlug(slug);
+            if (team == null) {
+                throw new FileNotFoundException("No team " + slug + " in organization " + org.getLogin());
+            }
+            fullNames = new HashSet<>();
+            for (GHRepository item : team.listRepositories().withPageSize(100)) {
+                fullNames.add(item.getFullName());
+            }
+            if (key != null) {
+                teams.put(key, Collections.unmodifiableSet(fullNames));
+            }
+            return fullNames.contains(repo.getFullName());
+        }
+    }
+
+    /** Identifies a team listing. */
+    private static final class Key {
+        /** Identifies the endpoint and credentials of the listing. */
+        private final String connection;
+
+        private final String org;
+
+        private final String team;
+
+        private Key(String connection, String org, String team) {
+            this.connection = connection;
+            this.org = org;
+            this.team = team;
+        }
+
+        /**
+         * Identifies a team listing.
+         *
+         * @return the key, {@code null} if the connection is not pooled.
+         */
+        @CheckForNull
+        static Key of(@NonNull GitHub github, @NonNull String org, @NonNull String teamSlug) {
+            String connection = Connector.connectionKey(github);
+            return connection == null
+                    ? null
+                    : new Key(connection, org.toLowerCase(Locale.ENGLISH), teamSlug.toLowerCase(Locale.ENGLISH));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return connection.equals(that.connection) && org.equals(that.org) && team.equals(that.team);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connection, org, team);
+        }
+    }
+}
@@ -7,12 +7,17 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.ScenarioMappingBuilder;
 import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
 import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import hudson.AbortException;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
 import hudson.util.LogTaskListener;
 import hudson.util.RingBufferLogHandler;
 import java.time.LocalDateTime;
@@ -980,4 +985,122 @@ public class ApiRateLimitCheckerTest extends AbstractGitHubWireMockTest {
         assertEquals(2, countOfOutputLinesContaining("Still sleeping"));
         assertEquals(initialRequestCount + 7, getRequestCount(githubApi));
     }
+
+    /**
+     * Verify that the shared budget spreads the requests of all the threads using the same
+     * credentials, in the order they arrived, while high priority requests do not wait.
+     */
+    @Test
+    public void ThrottleShared_sharesTheBudgetBetweenThreads() throws Exception {
+        GHRateLimit.Record rateLimit = Mockito.mock(GHRateLimit.Record.class);
+        Mockito.when(rateLimit.getLimit()).thenReturn(5000);
+        Mockito.when(rateLimit.getRemaining()).thenReturn(1000);
+        Mockito.when(rateLimit.getResetDate()).thenReturn(soon);
+        String apiUrl = "https://shared-budget.test/api/v3";
+        long now = System.currentTimeMillis();
+
+        ApiRateLimitChecker.LocalChecker first = ApiRateLimitChecker.ThrottleShared.getChecker(listener, apiUrl);
+        // the burst, plus one request paid for by the next ones
+        for (int i = 0; i <= ApiRateLimitChecker.calculateNormalizedBurst(5000); i++) {
+            assertEquals(now, first.checkRateLimitImpl(rateLimit, 0, now));
+        }
+        long firstDue = first.checkRateLimitImpl(rateLimit, 0, now);
+        assertTrue(firstDue > now);
+
+        ApiRateLimitChecker.LocalChecker second = ApiRateLimitChecker.ThrottleShared.getChecker(listener, apiUrl);
+        long secondDue = second.checkRateLimitImpl(rateLimit, 0, now);
+        assertTrue(secondDue > firstDue);
+
+        ApiRateLimitChecker.LocalChecker event = ApiRateLimitChecker.ThrottleShared.getChecker(listener, apiUrl);
+        event.setPriority(ApiRateLimitChecker.Priority.INTERACTIVE);
+        assertEquals(now, event.checkRateLimitImpl(rateLimit, 0, now));
+        // the event request was taken from the budget of the background requests
+        ApiRateLimitChecker.LocalChecker third = ApiRateLimitChecker.ThrottleShared.getChecker(listener, apiUrl);
+        assertTrue(third.checkRateLimitImpl(rateLimit, 0, now) - secondDue > secondDue - firstDue);
+
+        // once woken up, the reserved slot is used without reserving another one
+        assertEquals(firstDue, first.checkRateLimitImpl(rateLimit, 1, firstDue));
+    }
+
+    /**
+     * Verify that a background scan which allows it is deferred rather than block its thread for a
+     * long rate limit wait, while short waits still block.
+     */
+    @Test
+    public void longWaitsDeferBackgroundScans() throws Exception {
+        ApiRateLimitChecker.setMaxBlockingWaitMillis(TimeUnit.MINUTES.toMillis(1));
+        try {
+            GitHub gitHub = Mockito.mock(GitHub.class);
+            Mockito.when(gitHub.getApiUrl()).thenReturn("https://deferral.test/api/v3");
+            ApiRateLimitChecker.configureThreadLocalChecker(listener, gitHub);
+            ApiRateLimitChecker.LocalChecker checker = ApiRateLimitChecker.getLocalChecker();
+            long now = System.currentTimeMillis();
+            long reset = now + TimeUnit.HOURS.toMillis(1);
+
+            assertFalse(ApiRateLimitChecker.setDeferLongWaits(true));
+            RateLimitDeferredException deferral =
+                    assertThrows(RateLimitDeferredException.class, () -> checker.waitUntilRateLimit(now, reset, 0));
+            assertEquals(reset, deferral.getResumeAt());
+            assertTrue(checker.waitUntilRateLimit(now, now + 10, 0));
+
+            assertTrue(ApiRateLimitChecker.setDeferLongWaits(false));
+            // without deferral, the thread waits as usual
+            assertTrue(checker.waitUntilRateLimit(now, reset, 0));
+        } finally {
+            ApiRateLimitChecker.setMaxBlockingWaitMillis(0);
+            ApiRateLimitChecker.resetLocalChecker();
+        }
+    }
+
+    /**
+     * Verify that the scans nested in a scan that defers long waits, such as the repository scans of
+     * an organization scan, can tell that the deferral is already handled.
+     */
+    @Test
+    public void nestedScansKeepTheDeferralOfTheirScan() throws Exception {
+        try {
+            GitHub gitHub = Mockito.mock(GitHub.class);
+            Mockito.when(gitHub.getApiUrl()).thenReturn("https://deferral.test/api/v3");
+            assertFalse(ApiRateLimitChecker.isDeferringLongWaits());
+            ApiRateLimitChecker.configureThreadLocalChecker(listener, gitHub);
+            assertFalse(ApiRateLimitChecker.isDeferringLongWaits());
+            ApiRateLimitChecker.setDeferLongWaits(true);
+
+            // a nested scan configures the checker again, e.g. with other credentials
+            ApiRateLimitChecker.configureThreadLocalChecker(
+                    listener, gitHub, ApiRateLimitChecker.Priority.INTERACTIVE);
+            assertTrue(ApiRateLimitChecker.isDeferringLongWaits());
+        } finally {
+            ApiRateLimitChecker.resetLocalChecker();
+        }
+    }
+
+    /**
+     * Verify that a deferred scan schedules a new scan of its job for when the rate limit resets, and
+     * that it still stops when there is no job to schedule.
+     */
+    @Test
+    public void deferredScansAreRescheduled() throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject("deferred-scan");
+        try {
+            long resumeAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+            RateLimitDeferredException deferral = new RateLimitDeferredException(resumeAt);
+
+            AbortException abort = deferral.reschedule(project, listener);
+
+            assertTrue(abort.getMessage().contains("it will start again then"));
+            Queue.Item item = r.jenkins.getQueue().getItem(project);
+            assertNotNull(item);
+            assertTrue(item.getCauses().stream()
+                    .anyMatch(RateLimitDeferredException.DeferredScanCause.class::isInstance));
+            // the new scan does not start before the rate limit resets
+            assertTrue(((Queue.WaitingItem) item).timestamp.getTimeInMillis() >= resumeAt);
+            r.jenkins.getQueue().cancel(item);
+
+            abort = deferral.reschedule(null, listener);
+            assertTrue(abort.getMessage().contains("it could not be rescheduled"));
+        } finally {
+            project.delete();
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+public class ApiRequestSchedulerTest {
+
+    @Test
+    public void backgroundRequestsLeaveTheReserveToEvents() throws Exception {
+        ApiRequestScheduler scheduler = new ApiRequestScheduler();
+        long reset = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+        // nothing is known about the quota yet
+        assertTrue(scheduler.allows(ApiRateLimitChecker.Priority.BACKGROUND));
+
+        // 5 remaining out of 100 is within the reserve of background requests and notifications
+        scheduler.update(response(100, 5, reset));
+        assertFalse(scheduler.allows(ApiRateLimitChecker.Priority.BACKGROUND));
+        assertFalse(scheduler.allows(ApiRateLimitChecker.Priority.NOTIFICATION));
+        assertTrue(scheduler.allows(ApiRateLimitChecker.Priority.INTERACTIVE));
+
+        // notifications may use half of the reserve
+        scheduler.update(response(100, 6, reset));
+        assertFalse(scheduler.allows(ApiRateLimitChecker.Priority.BACKGROUND));
+        assertTrue(scheduler.allows(ApiRateLimitChecker.Priority.NOTIFICATION));
+        scheduler.admit(ApiRateLimitChecker.Priority.NOTIFICATION);
+        // the admitted request is counted until a response reports the quota
+        assertFalse(scheduler.allows(ApiRateLimitChecker.Priority.NOTIFICATION));
+        assertTrue(scheduler.allows(ApiRateLimitChecker.Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void backgroundRequestsResumeOnceTheQuotaIsRenewed() throws Exception {
+        ApiRequestScheduler scheduler = new ApiRequestScheduler();
+        // the reset is reported in seconds
+        long reset = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 1);
+
+        scheduler.update(response(100, 5, reset));
+        assertFalse(scheduler.allows(ApiRateLimitChecker.Priority.BACKGROUND));
+
+        // the reset has passed, so the request is admitted without waiting for a response
+        scheduler.admit(ApiRateLimitChecker.Priority.BACKGROUND);
+        assertTrue(scheduler.allows(ApiRateLimitChecker.Priority.BACKGROUND));
+    }
+
+    private static Response response(int limit, int remaining, long reset) {
+        Request request = new Request.Builder()
+                .url("https://scheduler.test/api/v3/repos/owner/repo")
+                .build();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .header("X-RateLimit-Limit", String.valueOf(limit))
+                .header("X-RateLimit-Remaining", String.valueOf(remaining))
+                .header("X-RateLimit-Reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(reset)))
+                .header("X-RateLimit-Resource", "core")
+                .body(ResponseBody.create("{}", MediaType.get("application/json")))
+                .build();
+    }
+}
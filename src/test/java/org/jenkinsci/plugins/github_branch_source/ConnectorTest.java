@@ -0,0 +1,107 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class ConnectorTest extends AbstractGitHubWireMockTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void concurrentConnectionsShareOneVerification() throws Exception {
+        // slow enough for all the threads to arrive while the verification is in progress
+        githubApi.stubFor(get(urlEqualTo("/"))
+                .willReturn(aResponse()
+                        .withFixedDelay(500)
+                        .withBody("{\"rate_limit_url\": \"https://localhost/placeholder/\"}")));
+
+        List<Throwable> failures = connectConcurrently(uniqueCredentials());
+
+        assertThat(failures, is(empty()));
+        githubApi.verify(1, getRequestedFor(urlEqualTo("/")));
+    }
+
+    @Test
+    public void failedVerificationIsSharedByAllTheWaiters() throws Exception {
+        // not an API root, so the verification fails
+        githubApi.stubFor(get(urlEqualTo("/")).willReturn(aResponse().withFixedDelay(500).withBody("{}")));
+        StandardCredentials credentials = uniqueCredentials();
+
+        List<Throwable> failures = connectConcurrently(credentials);
+
+        assertThat(failures, hasSize(THREADS));
+        assertThat(failures, everyItem(instanceOf(IOException.class)));
+        int sharedRequests = rootRequests();
+
+        // a failed verification is not remembered, the next caller verifies again on its own
+        githubApi.resetRequests();
+        assertThat(connectConcurrently(credentials, 1), hasSize(1));
+        assertThat(rootRequests(), is(sharedRequests));
+    }
+
+    private List<Throwable> connectConcurrently(StandardCredentials credentials) throws Exception {
+        return connectConcurrently(credentials, THREADS);
+    }
+
+    private List<Throwable> connectConcurrently(StandardCredentials credentials, int threads) throws Exception {
+        String apiUrl = "http://localhost:" + githubApi.port();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Connector.release(Connector.connect(apiUrl, credentials));
+                    return null;
+                }));
+            }
+            start.countDown();
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int rootRequests() {
+        return githubApi
+                .countRequestsMatching(getRequestedFor(urlEqualTo("/")).build())
+                .getCount();
+    }
+
+    /** Credentials no other test connects with, so that the connection has never been verified. */
+    private static StandardCredentials uniqueCredentials() {
+        String id = UUID.randomUUID().toString();
+        return new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, null, "user", id);
+    }
+}
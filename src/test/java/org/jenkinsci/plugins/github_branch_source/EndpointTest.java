@@ -2,6 +2,8 @@ package org.jenkinsci.plugins.github_branch_source;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -17,7 +19,10 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collections;
 import jenkins.model.Jenkins;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.htmlunit.FailingHttpStatusCodeException;
 import org.htmlunit.HttpMethod;
 import org.htmlunit.Page;
@@ -98,6 +103,52 @@ public class EndpointTest {
         assertTrue(htmlPage.getVisibleText().contains("GitHub Enterprise Servers"));
     }
 
+    @Test
+    public void clientSettingsRoundtrip() throws Exception {
+        Endpoint endpoint = endpointWithClientSettings();
+        GitHubConfiguration.get().setEndpoints(Collections.singletonList(endpoint));
+
+        j.submit(j.createWebClient().login("alice").goTo("manage/configure").getFormByName("config"));
+
+        Endpoint saved = GitHubConfiguration.get().findEndpoint("https://github.example.com/api/v3");
+        j.assertEqualDataBoundBeans(endpoint, saved);
+        assertEquals(Integer.valueOf(7), saved.getMaxIdleConnections());
+        assertEquals(Integer.valueOf(30), saved.getKeepAliveSeconds());
+        assertEquals(Integer.valueOf(3), saved.getMaxConcurrentRequests());
+        assertEquals(Integer.valueOf(20), saved.getConnectTimeoutSeconds());
+        assertEquals(Integer.valueOf(40), saved.getReadTimeoutSeconds());
+        assertTrue(saved.isDisableHttp2());
+    }
+
+    @Test
+    public void clientUsesTheEndpointSettings() {
+        GitHubConfiguration.get().setEndpoints(Collections.singletonList(endpointWithClientSettings()));
+
+        OkHttpClient client = EndpointClient.forApiUrl("https://github.example.com/api/v3");
+
+        assertEquals(20000, client.connectTimeoutMillis());
+        assertEquals(40000, client.readTimeoutMillis());
+        assertEquals(Collections.singletonList(Protocol.HTTP_1_1), client.protocols());
+        assertEquals(3, client.dispatcher().getMaxRequests());
+        assertEquals(3, client.dispatcher().getMaxRequestsPerHost());
+        assertSame(client, EndpointClient.forApiUrl("https://github.example.com/api/v3/"));
+
+        // the connection pool does not tell its keep-alive, but the client is rebuilt when it changes
+        GitHubConfiguration.get().findEndpoint("https://github.example.com/api/v3").setKeepAliveSeconds(60);
+        assertNotSame(client, EndpointClient.forApiUrl("https://github.example.com/api/v3"));
+    }
+
+    private static Endpoint endpointWithClientSettings() {
+        Endpoint endpoint = new Endpoint("https://github.example.com/api/v3", "Example");
+        endpoint.setMaxIdleConnections(7);
+        endpoint.setKeepAliveSeconds(30);
+        endpoint.setMaxConcurrentRequests(3);
+        endpoint.setConnectTimeoutSeconds(20);
+        endpoint.setReadTimeoutSeconds(40);
+        endpoint.setDisableHttp2(true);
+        return endpoint;
+    }
+
     private String appendCrumb(String url) {
         return url + "&" + getCrumb();
     }
@@ -0,0 +1,72 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+public class GitHubGraphQLScanTest {
+
+    private static JsonNode json(String json) throws Exception {
+        return new ObjectMapper().readTree(json.replace('\'', '"'));
+    }
+
+    @Test
+    public void graphQLUrl() {
+        assertThat(Connector.graphQLUrl("https://api.github.com"), is("https://api.github.com/graphql"));
+        assertThat(Connector.graphQLUrl("https://api.github.com/"), is("https://api.github.com/graphql"));
+        assertThat(
+                Connector.graphQLUrl("https://ghe.example.com/api/v3"), is("https://ghe.example.com/api/graphql"));
+    }
+
+    @Test
+    public void annotatedTag() throws Exception {
+        GitHubGraphQLScan.TagInfo tag = new GitHubGraphQLScan.TagInfo(json("{'name': 'v1.0', 'target': {"
+                + "'__typename': 'Tag', 'oid': 'aaaa', 'tagger': {'date': '2020-01-02T03:04:05Z'},"
+                + "'target': {'oid': 'bbbb'}}}"));
+        assertThat(tag.getName(), is("v1.0"));
+        assertThat(tag.getSha(), is("bbbb"));
+        assertThat(tag.getDate(), is(1577934245000L));
+    }
+
+    @Test
+    public void lightweightTag() throws Exception {
+        GitHubGraphQLScan.TagInfo tag = new GitHubGraphQLScan.TagInfo(json("{'name': 'v1.1', 'target': {"
+                + "'__typename': 'Commit', 'oid': 'cccc', 'committedDate': '2020-01-02T03:04:05Z'}}"));
+        assertThat(tag.getName(), is("v1.1"));
+        assertThat(tag.getSha(), is("cccc"));
+        assertThat(tag.getDate(), is(1577934245000L));
+    }
+
+    @Test
+    public void pullRequest() throws Exception {
+        GitHubGraphQLScan.PullRequestInfo pr = new GitHubGraphQLScan.PullRequestInfo(json("{'number': 4,"
+                + "'headRefOid': 'head', 'baseRefOid': 'base', 'mergeable': 'MERGEABLE',"
+                + "'author': {'login': 'stephenc', 'name': 'Stephen', 'email': ''},"
+                + "'potentialMergeCommit': {'oid': 'merge',"
+                + "'parents': {'nodes': [{'oid': 'base'}, {'oid': 'head'}]}}}"));
+        assertThat(pr.getNumber(), is(4));
+        assertThat(pr.getHeadSha(), is("head"));
+        assertThat(pr.getBaseSha(), is("base"));
+        assertThat(pr.getMergeable(), is(true));
+        assertThat(pr.getAuthorLogin(), is("stephenc"));
+        assertThat(pr.getAuthorName(), is("Stephen"));
+        assertThat(pr.getAuthorEmail(), nullValue());
+        assertThat(pr.getMergeCommitSha(), is("merge"));
+        assertThat(pr.getMergeCommitParents(), contains("base", "head"));
+    }
+
+    @Test
+    public void pullRequestPendingMergeability() throws Exception {
+        GitHubGraphQLScan.PullRequestInfo pr = new GitHubGraphQLScan.PullRequestInfo(json("{'number': 5,"
+                + "'headRefOid': 'head', 'baseRefOid': 'base', 'mergeable': 'UNKNOWN', 'author': null,"
+                + "'potentialMergeCommit': null}"));
+        assertThat(pr.getMergeable(), nullValue());
+        assertThat(pr.getAuthorLogin(), nullValue());
+        assertThat(pr.getMergeCommitSha(), nullValue());
+    }
+}
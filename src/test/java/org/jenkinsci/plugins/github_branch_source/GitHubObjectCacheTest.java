@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+
+public class GitHubObjectCacheTest {
+
+    private static final String SHA1 = "8f1314fc2c4ac6d2e23e9b28b3a9a1a1b1c1d1e1";
+    private static final String SHA2 = "c0e024f89969b976da165eecaa71e09dc60c3da1";
+    private static final String SHA3 = "a9e6d5a1d2d5f3c8e1f0b2c4d6e8f0a1b3c5d7e9";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final GHRepository repo = repository("cloudbeers/yolo");
+
+    @Test
+    public void evictsTheLeastRecentlyUsedObjects() {
+        GitHubObjectCache cache = new GitHubObjectCache(null, 2);
+        cache.put(repo, SHA1, GitHubObjectCache.GitObject.commit(1000L, Collections.emptyList()));
+        cache.put(repo, SHA2, GitHubObjectCache.GitObject.commit(2000L, Collections.singletonList(SHA1)));
+        // the first commit is now used more recently than the second one
+        assertThat(cache.get(repo, SHA1), notNullValue());
+
+        cache.put(repo, SHA3, GitHubObjectCache.GitObject.tag(SHA1, 3000L));
+
+        assertThat(cache.get(repo, SHA1), notNullValue());
+        assertThat(cache.get(repo, SHA2), nullValue());
+        assertThat(cache.get(repo, SHA3), notNullValue());
+    }
+
+    @Test
+    public void reloadsTheSavedObjects() throws Exception {
+        File file = new File(tmp.getRoot(), "objects.txt");
+        GitHubObjectCache cache = new GitHubObjectCache(file, 2);
+        cache.put(repo, SHA1, GitHubObjectCache.GitObject.commit(1000L, Arrays.asList(SHA2, SHA3)));
+        cache.put(repo, SHA2, GitHubObjectCache.GitObject.tag(SHA3, 2000L));
+        assertThat(cache.get(repo, SHA1), notNullValue());
+        cache.save();
+
+        // loaded on first use
+        GitHubObjectCache reloaded = new GitHubObjectCache(file, 2);
+
+        // the least recently used object is still the first to go
+        reloaded.put(repo, SHA3, GitHubObjectCache.GitObject.commit(3000L, Collections.emptyList()));
+        assertThat(reloaded.get(repo, SHA2), nullValue());
+        GitHubObjectCache.GitObject commit = reloaded.get(repo, SHA1);
+        assertThat(commit.isTag(), is(false));
+        assertThat(commit.getDate(), is(1000L));
+        assertThat(commit.getParents(), contains(SHA2, SHA3));
+        assertThat(commit.getTarget(), nullValue());
+
+        reloaded.save();
+        GitHubObjectCache again = new GitHubObjectCache(file, 2);
+        GitHubObjectCache.GitObject latest = again.get(repo, SHA3);
+        assertThat(latest.isTag(), is(false));
+        assertThat(latest.getDate(), is(3000L));
+        assertThat(again.get(repo, SHA1).getParents(), contains(SHA2, SHA3));
+    }
+
+    @Test
+    public void reloadsAnnotatedTags() throws Exception {
+        File file = new File(tmp.getRoot(), "objects.txt");
+        GitHubObjectCache cache = new GitHubObjectCache(file, 10);
+        cache.put(repo, SHA1, GitHubObjectCache.GitObject.tag(SHA2, 2000L));
+        cache.save();
+
+        GitHubObjectCache reloaded = new GitHubObjectCache(file, 10);
+        reloaded.load();
+
+        GitHubObjectCache.GitObject tag = reloaded.get(repo, SHA1);
+        assertThat(tag.isTag(), is(true));
+        assertThat(tag.getTarget(), is(SHA2));
+        assertThat(tag.getDate(), is(2000L));
+    }
+
+    @Test
+    public void neverCachesRefsOtherThanShas() throws Exception {
+        GHCommit commit = mock(GHCommit.class);
+        when(commit.getCommitDate()).thenReturn(new Date(1000L));
+        when(commit.getParentSHA1s()).thenReturn(Collections.singletonList(SHA2));
+        when(repo.getCommit("master")).thenReturn(commit);
+        when(repo.getCommit(SHA1)).thenReturn(commit);
+        GitHubObjectCache cache = new GitHubObjectCache(null, 10);
+
+        assertThat(cache.getCommit(repo, "master").getDate(), is(1000L));
+        assertThat(cache.getCommit(repo, "master").getDate(), is(1000L));
+        assertThat(cache.getCommit(repo, SHA1).getDate(), is(1000L));
+        assertThat(cache.getCommit(repo, SHA1).getParents(), contains(SHA2));
+
+        // the branch may point to another commit by now, the commit never changes
+        verify(repo, times(2)).getCommit("master");
+        verify(repo, times(1)).getCommit(SHA1);
+        assertThat(cache.get(repo, "master"), nullValue());
+    }
+
+    @Test
+    public void onlyServesObjectsForTheRepositoryTheyWereFetchedFrom() throws Exception {
+        GHCommit commit = mock(GHCommit.class);
+        when(commit.getCommitDate()).thenReturn(new Date(1000L));
+        when(commit.getParentSHA1s()).thenReturn(Collections.emptyList());
+        when(repo.getCommit(SHA1)).thenReturn(commit);
+        GHRepository other = repository("someone/else");
+        when(other.getCommit(SHA1)).thenReturn(commit);
+        GitHubObjectCache cache = new GitHubObjectCache(null, 10);
+
+        cache.getCommit(repo, SHA1);
+        assertThat(cache.get(repository("CloudBeers/Yolo"), SHA1), notNullValue());
+        // knowing the SHA does not tell anything about another repository
+        assertThat(cache.get(other, SHA1), nullValue());
+        cache.getCommit(other, SHA1);
+
+        verify(repo, times(1)).getCommit(SHA1);
+        verify(other, times(1)).getCommit(SHA1);
+    }
+
+    private static GHRepository repository(String fullName) {
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn(fullName);
+        return repo;
+    }
+}
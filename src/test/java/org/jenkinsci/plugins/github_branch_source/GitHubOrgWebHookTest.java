@@ -28,6 +28,8 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import java.io.File;
+import jenkins.util.io.FileBoolean;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
@@ -45,6 +47,38 @@ public class GitHubOrgWebHookTest {
     @Issue("JENKINS-58942")
     @Test
     public void registerCustom() throws Exception {
+        stubOrganization("[]");
+        register();
+        // the navigators scoped to a team need the team events
+        wireMockRule.verify(postRequestedFor(urlEqualTo("/api/orgs/myorg/hooks"))
+                .withRequestBody(matchingJsonPath("$.events", containing("\"team\"")))
+                .withRequestBody(matchingJsonPath("$.events", containing("team_add"))));
+    }
+
+    @Test
+    public void registerReplacesAHookMissingEvents() throws Exception {
+        // registered by an older version, which subscribed to fewer events
+        new FileBoolean(new File(r.jenkins.getRootDir(), "github-webhooks/GitHubOrgHook.myorg")).on();
+        stubOrganization("[{\"id\":1,\"name\":\"web\",\"active\":true,"
+                + "\"events\":[\"repository\",\"push\",\"pull_request\",\"pull_request_review_comment\"],"
+                + "\"config\":{\"url\":\"https://mycorp/hook-proxy/github-webhook/\"}}]");
+        wireMockRule.stubFor(
+                delete(urlEqualTo("/api/orgs/myorg/hooks/1")).willReturn(aResponse().withStatus(204)));
+
+        register();
+
+        // one hook with all the events, rather than a second one next to the old one
+        wireMockRule.verify(1, deleteRequestedFor(urlEqualTo("/api/orgs/myorg/hooks/1")));
+        wireMockRule.verify(1, postRequestedFor(urlEqualTo("/api/orgs/myorg/hooks"))
+                .withRequestBody(matchingJsonPath("$.events", containing("team_add"))));
+
+        // the hook is now known to have all the events
+        wireMockRule.resetRequests();
+        register();
+        wireMockRule.verify(0, getRequestedFor(urlEqualTo("/api/orgs/myorg/hooks")));
+    }
+
+    private void stubOrganization(String hooks) {
         System.setProperty("jenkins.hook.url", "https://mycorp/hook-proxy/");
         // Return 404 for /rate_limit
         wireMockRule.stubFor(
@@ -59,10 +93,13 @@ public class GitHubOrgWebHookTest {
         wireMockRule.stubFor(get(urlEqualTo("/api/orgs/myorg"))
                 .willReturn(aResponse().withBody("{\"login\":\"myorg\",\"html_url\":\"https://github.com/myorg\"}")));
         wireMockRule.stubFor(
-                get(urlEqualTo("/api/orgs/myorg/hooks")).willReturn(aResponse().withBody("[]")));
+                get(urlEqualTo("/api/orgs/myorg/hooks")).willReturn(aResponse().withBody(hooks)));
         wireMockRule.stubFor(post(urlEqualTo("/api/orgs/myorg/hooks"))
                 .withRequestBody(matchingJsonPath("$.config.url", equalTo("https://mycorp/hook-proxy/github-webhook/")))
                 .willReturn(aResponse().withBody("{}")));
+    }
+
+    private void register() throws Exception {
         GitHub hub = Connector.connect("http://localhost:" + wireMockRule.port() + "/api/", null);
         try {
             GitHubOrgWebHook.register(hub, "myorg");
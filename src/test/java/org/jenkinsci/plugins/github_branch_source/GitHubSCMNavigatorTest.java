@@ -26,8 +26,12 @@
 package org.jenkinsci.plugins.github_branch_source;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
@@ -51,7 +55,10 @@ import hudson.security.AuthorizationStrategy;
 import hudson.security.SecurityRealm;
 import hudson.util.ListBoxModel;
 import hudson.util.LogTaskListener;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -70,11 +77,13 @@ import jenkins.scm.api.metadata.ObjectMetadataAction;
 import jenkins.scm.api.trait.SCMTrait;
 import jenkins.scm.impl.NoOpProjectObserver;
 import org.hamcrest.Matchers;
+import org.jenkinsci.plugins.github.extension.GHSubscriberEvent;
 import org.junit.Before;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.MockAuthorizationStrategy;
 import org.jvnet.hudson.test.MockFolder;
+import org.kohsuke.github.GHEvent;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
@@ -100,6 +109,8 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
     @Override
     public void prepareMockGitHub() {
         super.prepareMockGitHub();
+        // the team listings are shared between navigators
+        TeamIndex.invalidateAll();
         setCredentials(Collections.emptyList());
         navigator = navigatorForRepoOwner("cloudbeers", null);
     }
@@ -137,6 +148,40 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
         assertThat(projectNames, containsInAnyOrder("basic", "yolo", "yolo-archived"));
     }
 
+    @Test
+    public void fetchReposInParallel() throws Exception {
+        final Set<String> projectNames = Collections.synchronizedSet(new HashSet<>());
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final SCMSourceObserver observer =
+                getObserver(projectNames, new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        int threads = GitHubSCMNavigator.setRepositoryScanThreads(4);
+        try {
+            navigator.visitSources(SCMSourceObserver.filter(
+                    observer,
+                    "Hello-World",
+                    "github-branch-source-plugin",
+                    "unknown",
+                    "basic",
+                    "yolo",
+                    "yolo-archived"));
+        } finally {
+            GitHubSCMNavigator.setRepositoryScanThreads(threads);
+        }
+
+        assertThat(projectNames, containsInAnyOrder("basic", "yolo", "yolo-archived"));
+        // what the worker threads log about each repository is kept together
+        String repository = null;
+        for (String line : log.toString("UTF-8").split("\\R")) {
+            if (line.contains("Processing repository: ")) {
+                repository = line.substring(line.indexOf("Processing repository: ") + 23).trim();
+            } else if (line.matches(".*(Proposing|Ignoring|Skipping repository) .*")) {
+                assertThat(line, anyOf(endsWith(" " + repository), containsString(" " + repository + " ")));
+            }
+        }
+        assertThat(repository, notNullValue());
+    }
+
     @Test
     public void fetchReposFromTeamSlug() throws Exception {
         final Set<String> projectNames = new HashSet<>();
@@ -179,6 +224,55 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
         assertThat(projectNames, empty());
     }
 
+    @Test
+    public void fetchOneRepoWithTeamSlug_ListsTheTeamAgainOnlyOnceItChanged() throws Exception {
+        final Set<String> projectNames = new HashSet<>();
+        final SCMSourceObserver observer = getObserver(projectNames);
+
+        List<SCMTrait<? extends SCMTrait<?>>> traits = new ArrayList<>(navigator.getTraits());
+        traits.add(new TeamSlugTrait("justice-league"));
+        navigator.setTraits(traits);
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo-archived"));
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo-archived"));
+
+        assertThat(projectNames, containsInAnyOrder("yolo-archived"));
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/organizations/4181899/team/1/repos")));
+
+        // a repository missing from the listing does not list the team again
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo"));
+
+        assertThat(projectNames, containsInAnyOrder("yolo-archived"));
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/organizations/4181899/team/1/repos")));
+
+        // neither for changes that leave the repositories of the team alone, nor for other teams
+        sendTeamEvent(GHEvent.TEAM, "edited", "Justice-League");
+        sendTeamEvent(GHEvent.TEAM, "added_to_repository", "avengers");
+        sendTeamEvent(GHEvent.TEAM_ADD, null, "avengers");
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo"));
+
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/organizations/4181899/team/1/repos")));
+
+        sendTeamEvent(GHEvent.TEAM, "added_to_repository", "Justice-League");
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo"));
+
+        githubApi.verify(2, getRequestedFor(urlPathEqualTo("/organizations/4181899/team/1/repos")));
+
+        sendTeamEvent(GHEvent.TEAM_ADD, null, "justice-league");
+        navigator.visitSources(SCMSourceObserver.filter(observer, "yolo-archived"));
+
+        githubApi.verify(3, getRequestedFor(urlPathEqualTo("/organizations/4181899/team/1/repos")));
+    }
+
+    private static void sendTeamEvent(GHEvent event, @Nullable String action, String teamSlug) {
+        new GitHubTeamEventSubscriber()
+                .onEvent(new GHSubscriberEvent(
+                        "myOrigin",
+                        event,
+                        "{" + (action == null ? "" : "\"action\":\"" + action + "\",")
+                                + "\"team\":{\"slug\":\"" + teamSlug + "\"},"
+                                + "\"organization\":{\"login\":\"CloudBeers\"}}"));
+    }
+
     @Test
     public void fetchOneRepo_BelongingToAuthenticatedUser() throws Exception {
         setCredentials(Collections.singletonList(credentials));
@@ -308,6 +402,111 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
         assertThat(projectNames, containsInAnyOrder("yolo"));
     }
 
+    @Test
+    public void fetchRepos_ExcludingForked_WithoutFetchingEachRepository() throws Exception {
+        int pages = stubOrganization("bigorg", 1000);
+        navigator = navigatorForRepoOwner("bigorg", null);
+        navigator.setTraits(Collections.singletonList(new ExcludeForkedRepositoriesTrait()));
+        final Set<String> projectNames = new HashSet<>();
+        final SCMSourceObserver observer = getObserver(projectNames);
+
+        navigator.visitSources(observer);
+
+        assertThat(projectNames, hasSize(500));
+        assertThat(projectNames, not(hasItem("repo-0")));
+        assertThat(projectNames, hasItem("repo-999"));
+        // the fork flag of the listing is enough, getSource() used to fetch each of the 1000 repositories
+        githubApi.verify(pages, getRequestedFor(urlPathEqualTo("/orgs/bigorg/repos")));
+        githubApi.verify(0, getRequestedFor(urlMatching("/repos/bigorg/.*")));
+    }
+
+    @Test
+    public void fetchRepos_SearchingWithTheExclusionsAsQualifiers() throws Exception {
+        stubOrganization("bigorg", 1000);
+        githubApi.stubFor(get(urlPathEqualTo("/search/repositories"))
+                .withQueryParam("q", equalTo("org:bigorg archived:false is:private sort:name-asc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBody("{\"total_count\":2,\"incomplete_results\":false,\"items\":["
+                                + repositoryJson("bigorg", 1, false) + "," + repositoryJson("bigorg", 3, false)
+                                + "]}")));
+        navigator = navigatorForRepoOwner("bigorg", null);
+        navigator.setTraits(Arrays.asList(
+                new ExcludeArchivedRepositoriesTrait(),
+                new ExcludeForkedRepositoriesTrait(),
+                new ExcludePublicRepositoriesTrait(),
+                new SearchRepositoriesTrait()));
+        final Set<String> projectNames = new HashSet<>();
+        final SCMSourceObserver observer = getObserver(projectNames);
+
+        navigator.visitSources(observer);
+
+        assertThat(projectNames, containsInAnyOrder("repo-1", "repo-3"));
+        githubApi.verify(0, getRequestedFor(urlPathEqualTo("/orgs/bigorg/repos")));
+    }
+
+    @Test
+    public void fetchRepos_ListingWhenMoreRepositoriesMatchThanASearchReturns() throws Exception {
+        int pages = stubOrganization("bigorg", 1000);
+        githubApi.stubFor(get(urlPathEqualTo("/search/repositories"))
+                .withQueryParam("q", equalTo("org:bigorg sort:name-asc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBody("{\"total_count\":5000,\"incomplete_results\":false,\"items\":["
+                                + repositoryJson("bigorg", 1, false) + "]}")));
+        navigator = navigatorForRepoOwner("bigorg", null);
+        navigator.setTraits(Arrays.asList(new ExcludeForkedRepositoriesTrait(), new SearchRepositoriesTrait()));
+        final Set<String> projectNames = new HashSet<>();
+        final SCMSourceObserver observer = getObserver(projectNames);
+
+        navigator.visitSources(observer);
+
+        assertThat(projectNames, hasSize(500));
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/search/repositories")));
+        githubApi.verify(pages, getRequestedFor(urlPathEqualTo("/orgs/bigorg/repos")));
+    }
+
+    /**
+     * Stubs an organization whose even repositories are public forks and odd repositories private.
+     *
+     * @return the number of pages of the repository listing.
+     */
+    private int stubOrganization(String login, int repositories) {
+        String baseUrl = "http://localhost:" + githubApi.port();
+        githubApi.stubFor(get(urlEqualTo("/orgs/" + login))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBody("{\"login\":\"" + login + "\",\"id\":4000,\"type\":\"Organization\",\"url\":\""
+                                + baseUrl + "/orgs/" + login + "\"}")));
+        int pages = (repositories + 99) / 100;
+        String listing = baseUrl + "/orgs/" + login + "/repos?per_page=100";
+        for (int page = 1; page <= pages; page++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = (page - 1) * 100; i < Math.min(page * 100, repositories); i++) {
+                body.append(i % 100 == 0 ? "" : ",").append(repositoryJson(login, i, i % 2 == 0));
+            }
+            body.append(']');
+            String link = page < pages
+                    ? "<" + listing + "&page=" + (page + 1) + ">; rel=\"next\""
+                    : "<" + listing + "&page=1>; rel=\"first\"";
+            String url = "/orgs/" + login + "/repos?per_page=100" + (page == 1 ? "" : "&page=" + page);
+            githubApi.stubFor(get(urlEqualTo(url))
+                    .willReturn(aResponse()
+                            .withHeader("Content-Type", "application/json; charset=utf-8")
+                            .withHeader("Link", link)
+                            .withBody(body.toString())));
+        }
+        return pages;
+    }
+
+    private String repositoryJson(String login, int i, boolean fork) {
+        return String.format(
+                "{\"id\":%d,\"name\":\"repo-%d\",\"full_name\":\"%s/repo-%d\",\"fork\":%b,\"private\":%b,"
+                        + "\"archived\":false,\"url\":\"http://localhost:%d/repos/%s/repo-%d\","
+                        + "\"owner\":{\"login\":\"%s\",\"id\":4000,\"type\":\"Organization\"}}",
+                i, i, login, i, fork, i % 2 == 1, githubApi.port(), login, i, login);
+    }
+
     @Test
     public void fetchOneRepo_ExcludingForked() throws Exception {
         setCredentials(Collections.singletonList(credentials));
@@ -445,6 +644,19 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
         assertThat(projectNames, containsInAnyOrder("yolo", "yolo-archived", "yolo-private"));
     }
 
+    @Test
+    public void fetchRepos_BelongingToUser_IgnoringVisibilityExclusions() throws Exception {
+        navigator = navigatorForRepoOwner("stephenc", null);
+        navigator.setTraits(Collections.singletonList(new ExcludePublicRepositoriesTrait()));
+        final Set<String> projectNames = new HashSet<>();
+        final SCMSourceObserver observer = getObserver(projectNames);
+
+        navigator.visitSources(observer);
+
+        // the scans of a user account never excluded the public or private repositories
+        assertThat(projectNames, containsInAnyOrder("yolo", "yolo-archived", "yolo-private"));
+    }
+
     @Test
     public void fetchRepos_BelongingToUser_ExcludingArchived() throws Exception {
         navigator = navigatorForRepoOwner("stephenc", null);
@@ -677,6 +889,10 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
     }
 
     private SCMSourceObserver getObserver(Collection<String> names) {
+        return getObserver(names, new LogTaskListener(Logger.getAnonymousLogger(), Level.INFO));
+    }
+
+    private SCMSourceObserver getObserver(Collection<String> names, TaskListener listener) {
         return new SCMSourceObserver() {
             @NonNull
             @Override
@@ -687,7 +903,7 @@ public class GitHubSCMNavigatorTest extends AbstractGitHubWireMockTest {
             @NonNull
             @Override
             public TaskListener getListener() {
-                return new LogTaskListener(Logger.getAnonymousLogger(), Level.INFO);
+                return listener;
             }
 
             @NonNull
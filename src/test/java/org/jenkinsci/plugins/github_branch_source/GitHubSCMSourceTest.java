@@ -62,8 +62,11 @@ import hudson.security.SecurityRealm;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.LogTaskListener;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -75,6 +78,7 @@ import jenkins.scm.api.metadata.ObjectMetadataAction;
 import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
 import org.hamcrest.Matchers;
 import org.jenkinsci.plugins.workflow.multibranch.WorkflowMultiBranchProject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -131,6 +135,12 @@ public class GitHubSCMSourceTest extends GitSCMSourceBase {
                 .willSetStateTo("Pull Request Merge Hash - retry 2"));
     }
 
+    @After
+    public void resetPullRequestScan() {
+        GitHubSCMSource.setPullRequestScanThreads(1);
+        GitHubSCMSource.setDeferMergeability(false);
+    }
+
     SCMHeadEvent<PushGHEventSubscriber> pushEvent =
             new SCMHeadEvent<PushGHEventSubscriber>(SCMEvent.Type.CREATED, System.currentTimeMillis(), null, null) {
                 @Override
@@ -534,6 +544,103 @@ public class GitHubSCMSourceTest extends GitSCMSourceBase {
                 revByName.get("stephenc-patch-1"), hasProperty("hash", is("095e69602bb95a278505e937e41d505ac3cdd263")));
     }
 
+    @Test
+    public void fetchSmokes_InParallel() throws Exception {
+        Map<String, SCMRevision> serial = fetchRevisions(TaskListener.NULL);
+        // resolve the pull requests again from scratch
+        githubApi.resetScenarios();
+        GitHubSCMSource.setPullRequestScanThreads(4);
+
+        Map<String, SCMRevision> parallel = fetchRevisions(TaskListener.NULL);
+
+        assertThat(parallel.keySet(), containsInAnyOrder("PR-2", "PR-3", "PR-4", "master", "stephenc-patch-1"));
+        assertThat(parallel, is(serial));
+    }
+
+    @Test
+    public void fetchSmokes_badTarget_InParallel() throws Exception {
+        // PR 2 cannot determine its base commit, as in fetchSmokes_badTarget, but on a worker thread
+        githubApi.stubFor(
+                get(urlMatching("(/api/v3)?/repos/cloudbeers/yolo/commits/38814ca33833ff5583624c29f305be9133f27a40"))
+                        .willReturn(aResponse()
+                                .withStatus(404)
+                                .withHeader("Content-Type", "application/json; charset=utf-8")
+                                .withBodyFile("body-heads-master-notfound.json")));
+        githubApi.stubFor(get(urlMatching("(/api/v3)?/repos/cloudbeers/yolo/git/refs/heads/master"))
+                .inScenario("PR 2 Master 404")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("body-heads-master-notfound.json"))
+                .willSetStateTo("Master 200"));
+        githubApi.stubFor(get(urlMatching("(/api/v3)?/repos/cloudbeers/yolo/git/refs/heads/master"))
+                .inScenario("PR 2 Master 404")
+                .whenScenarioStateIs("Master 200")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("body-heads-master.json")));
+        GitHubSCMSource.setPullRequestScanThreads(4);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        Map<String, SCMRevision> revByName = fetchRevisions(new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        // the failure of the worker thread is reported by the scan thread, which carries on
+        assertThat(revByName.keySet(), containsInAnyOrder("PR-3", "PR-4", "master", "stephenc-patch-1"));
+        assertThat(log.toString("UTF-8"), containsString("Error while processing pull request 2"));
+    }
+
+    @Test
+    public void fetchSmokes_DeferredMergeability() throws Exception {
+        // PR 2 is computed after two checks, as set up for every test, and PR 4 after one
+        githubApi.stubFor(get(urlEqualTo("/repos/cloudbeers/yolo/pulls/4"))
+                .inScenario("Pull Request 4 Mergeable")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("body-yolo-pulls-4-mergeable-null.json"))
+                .willSetStateTo("Pull Request 4 Mergeable - computed"));
+        githubApi.stubFor(get(urlEqualTo("/repos/cloudbeers/yolo/pulls/4"))
+                .inScenario("Pull Request 4 Mergeable")
+                .whenScenarioStateIs("Pull Request 4 Mergeable - computed")
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("body-yolo-pulls-4-JENKINS-58450.json")));
+        GitHubSCMSource.setDeferMergeability(true);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        Map<String, SCMRevision> revByName = fetchRevisions(new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        assertThat(revByName.keySet(), containsInAnyOrder("PR-2", "PR-3", "PR-4", "master", "stephenc-patch-1"));
+        assertThat(revByName.get("PR-2"), hasProperty("mergeHash", is("38814ca33833ff5583624c29f305be9133f27a40")));
+        assertThat(revByName.get("PR-4"), hasProperty("mergeHash", is(PullRequestSCMRevision.NOT_MERGEABLE_HASH)));
+        // a single wait per round, for all the pull requests still computed
+        String output = log.toString("UTF-8");
+        assertThat(output, containsString("Waiting for GitHub to create a merge commit for 2 pull requests."));
+        assertThat(output, containsString("Waiting for GitHub to create a merge commit for 1 pull requests."));
+        assertThat(output.split("Waiting for GitHub to create a merge commit for ", -1).length - 1, is(2));
+    }
+
+    private Map<String, SCMRevision> fetchRevisions(TaskListener listener) throws Exception {
+        SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+        source.fetch(
+                new SCMSourceCriteria() {
+                    @Override
+                    public boolean isHead(@NonNull Probe probe, @NonNull TaskListener listener) throws IOException {
+                        return probe.stat("README.md").getType() == SCMFile.Type.REGULAR_FILE;
+                    }
+                },
+                collector,
+                null,
+                listener);
+        Map<String, SCMRevision> revByName = new HashMap<>();
+        for (Map.Entry<SCMHead, SCMRevision> h : collector.result().entrySet()) {
+            revByName.put(h.getKey().getName(), h.getValue());
+        }
+        return revByName;
+    }
+
     @Test
     public void fetchSmokesUnknownMergeable() throws Exception {
         // make it so PR-2 always returns mergeable = null
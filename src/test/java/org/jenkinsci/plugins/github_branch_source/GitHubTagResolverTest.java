@@ -0,0 +1,172 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.model.TaskListener;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import jenkins.scm.api.SCMHeadObserver;
+import org.junit.Test;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+
+public class GitHubTagResolverTest extends AbstractGitHubWireMockTest {
+
+    @Test
+    public void lightweightTagsAreResolvedOnceOverRest() throws Exception {
+        GitHub gitHub = mock(GitHub.class);
+        when(gitHub.isAnonymous()).thenReturn(true);
+        when(gitHub.getApiUrl()).thenReturn("https://resolver.test/api/v3");
+        GHRepository repo = mock(GHRepository.class);
+        GHCommit commit = mock(GHCommit.class);
+        when(commit.getCommitDate()).thenReturn(new Date(1234L));
+        when(repo.getCommit("c0ffee")).thenReturn(commit);
+        List<GHRef> refs = Arrays.asList(
+                ref("refs/tags/v1.0", "c0ffee"), ref("refs/heads/main", "c0ffee"), ref("refs/tags/v1.1", "c0ffee"));
+
+        List<GitHubGraphQLScan.TagInfo> tags = new ArrayList<>();
+        GitHubTagResolver.resolve(gitHub, repo, refs, SCMHeadObserver.collect(), TaskListener.NULL).forEach(tags::add);
+
+        assertThat(tags.size(), is(2));
+        assertThat(tags.get(0).getName(), is("v1.0"));
+        assertThat(tags.get(0).getSha(), is("c0ffee"));
+        assertThat(tags.get(0).getDate(), is(1234L));
+        assertThat(tags.get(1).getName(), is("v1.1"));
+        assertThat(tags.get(1).getDate(), is(1234L));
+        // the second tag pointing at the same commit is served from the cache
+        verify(repo, times(1)).getCommit("c0ffee");
+    }
+
+    @Test
+    public void tagsAreResolvedWithOneGraphQLRequestPerPage() throws Exception {
+        githubApi.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"data\": {\"repository\": {"
+                                + "\"o0\": {\"__typename\": \"Tag\", \"oid\": \"" + sha(1) + "\","
+                                + " \"tagger\": {\"date\": \"2020-01-01T00:00:00Z\"},"
+                                + " \"target\": {\"oid\": \"" + sha(2) + "\"}},"
+                                + "\"o1\": {\"__typename\": \"Commit\", \"oid\": \"" + sha(3) + "\","
+                                + " \"committedDate\": \"2021-01-01T00:00:00Z\","
+                                + " \"parents\": {\"nodes\": []}},"
+                                + "\"o2\": null}}}")));
+        GitHub gitHub = connect();
+        try {
+            GHRepository repo = repository();
+            // the object is not known to GraphQL, nor to the REST API
+            when(repo.getCommit(sha(4))).thenThrow(new FileNotFoundException(sha(4)));
+            List<GHRef> refs = Arrays.asList(
+                    ref("refs/tags/annotated", sha(1), "tag"),
+                    ref("refs/tags/lightweight", sha(3), "commit"),
+                    ref("refs/tags/missing", sha(4), "commit"));
+
+            List<GitHubGraphQLScan.TagInfo> tags = new ArrayList<>();
+            GitHubTagResolver.resolve(gitHub, repo, refs, SCMHeadObserver.collect(), TaskListener.NULL)
+                    .forEach(tags::add);
+
+            assertThat(tags.size(), is(3));
+            assertThat(tags.get(0).getName(), is("annotated"));
+            assertThat(tags.get(0).getSha(), is(sha(2)));
+            assertThat(tags.get(0).getDate(), is(1577836800000L));
+            assertThat(tags.get(1).getName(), is("lightweight"));
+            assertThat(tags.get(1).getSha(), is(sha(3)));
+            assertThat(tags.get(1).getDate(), is(1609459200000L));
+            assertThat(tags.get(2).getName(), is("missing"));
+            assertThat(tags.get(2).getSha(), is(sha(4)));
+            assertThat(tags.get(2).getDate(), is(0L));
+            githubApi.verify(1, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(containing(sha(4))));
+            // only the object GraphQL could not resolve is looked up over REST
+            verify(repo, never()).getCommit(sha(3));
+            verify(repo, never()).getTagObject(anyString());
+            verify(repo, times(1)).getCommit(sha(4));
+        } finally {
+            Connector.release(gitHub);
+        }
+    }
+
+    @Test
+    public void noFurtherPageIsResolvedOnceTheScanIsComplete() throws Exception {
+        githubApi.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"data\": {\"repository\": {}}}")));
+        GitHub gitHub = connect();
+        try {
+            GHRepository repo = repository();
+            GHCommit commit = mock(GHCommit.class);
+            when(commit.getCommitDate()).thenReturn(new Date(1234L));
+            when(repo.getCommit(anyString())).thenReturn(commit);
+            List<GHRef> refs = new ArrayList<>();
+            for (int i = 0; i < GitHubTagResolver.BATCH_SIZE + 50; i++) {
+                refs.add(ref("refs/tags/v" + i, sha(i), "commit"));
+            }
+            SCMHeadObserver observer = mock(SCMHeadObserver.class);
+            // the observer has seen what it was waiting for by the end of the first page
+            when(observer.isObserving()).thenReturn(true, false);
+
+            List<GitHubGraphQLScan.TagInfo> tags = new ArrayList<>();
+            GitHubTagResolver.resolve(gitHub, repo, refs, observer, TaskListener.NULL)
+                    .forEach(tags::add);
+
+            assertThat(tags.size(), is(GitHubTagResolver.BATCH_SIZE));
+            githubApi.verify(1, postRequestedFor(urlEqualTo("/graphql")));
+            verify(repo, never()).getCommit(sha(GitHubTagResolver.BATCH_SIZE));
+        } finally {
+            Connector.release(gitHub);
+        }
+    }
+
+    private GitHub connect() throws Exception {
+        return Connector.connect(
+                "http://localhost:" + githubApi.port(),
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "resolver", null, "user", "secret"));
+    }
+
+    /** A repository no other test has resolved objects of, as the object cache is shared. */
+    private static GHRepository repository() {
+        GHRepository repo = mock(GHRepository.class);
+        String name = UUID.randomUUID().toString();
+        when(repo.getOwnerName()).thenReturn("cloudbeers");
+        when(repo.getName()).thenReturn(name);
+        when(repo.getFullName()).thenReturn("cloudbeers/" + name);
+        return repo;
+    }
+
+    private static String sha(int i) {
+        return String.format("%040x", i);
+    }
+
+    private static GHRef ref(String name, String sha) {
+        return ref(name, sha, "commit");
+    }
+
+    private static GHRef ref(String name, String sha, String type) {
+        GHRef ref = mock(GHRef.class);
+        GHRef.GHObject object = mock(GHRef.GHObject.class);
+        when(object.getSha()).thenReturn(sha);
+        when(object.getType()).thenReturn(type);
+        when(ref.getRef()).thenReturn(name);
+        when(ref.getObject()).thenReturn(object);
+        return ref;
+    }
+}
@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.github_branch_source;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.Assert.*;
 
+import hudson.util.StreamTaskListener;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
@@ -10,9 +11,12 @@ import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadObserver;
 import jenkins.scm.api.SCMHeadOrigin;
 import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.junit.After;
 import org.junit.Test;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
 import org.mockito.Mockito;
 
 public class GithubSCMSourcePRsTest extends GitSCMSourceBase {
@@ -21,6 +25,12 @@ public class GithubSCMSourcePRsTest extends GitSCMSourceBase {
         this.source = new GitHubSCMSource("cloudbeers", "yolo", null, false);
     }
 
+    @After
+    public void resetIncrementalPullRequestScan() {
+        GitHubSCMSource.setIncrementalPullRequestScan(false);
+        GitHubSCMSource.setPullRequestReconciliationMinutes(60);
+    }
+
     @Test
     public void testClosedSinglePR() throws IOException {
         // Situation: Hitting the Github API for a PR and getting a closed PR
@@ -261,4 +271,96 @@ public class GithubSCMSourcePRsTest extends GitSCMSourceBase {
         assertEquals(2, pullRequest.next().getId());
         assertFalse(pullRequest.hasNext());
     }
+
+    // Incremental listing of the PRs
+    @Test
+    public void testIncrementalScanOnlyListsTheUpdatedPRs() throws IOException {
+        // Situation: since the previous scan, PR 2 was closed, PR 3 was opened and PR 1 was edited in
+        // the same second as the most recent update the previous scan saw
+        stubPullRequestListings();
+        GitHubSCMSource.setIncrementalPullRequestScan(true);
+
+        Map<Integer, String> first = listPullRequests(github);
+        Map<Integer, String> second = listPullRequests(github);
+
+        // Expected: the second scan only reads the PRs updated since the first one, up to PR 5
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(first.keySet()));
+        assertEquals(Arrays.asList(3, 1), new ArrayList<>(second.keySet()));
+        assertEquals("Edited in the same second as the last scan", second.get(1));
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("open")));
+        githubApi.verify(1, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("all"))
+                .withQueryParam("sort", equalTo("updated")));
+    }
+
+    @Test
+    public void testIncrementalScanListsAllThePRsAfterTheReconciliationPeriod() throws IOException {
+        // Situation: the reconciliation period is over by the time of the second scan
+        stubPullRequestListings();
+        GitHubSCMSource.setIncrementalPullRequestScan(true);
+        GitHubSCMSource.setPullRequestReconciliationMinutes(0);
+
+        listPullRequests(github);
+        Map<Integer, String> second = listPullRequests(github);
+
+        // Expected: both scans list all the open PRs
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(second.keySet()));
+        githubApi.verify(2, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("open")));
+        githubApi.verify(0, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("all")));
+    }
+
+    @Test
+    public void testIncrementalScanListsAllThePRsWithAnotherConnection() throws IOException {
+        // Situation: the second scan uses another connection, the PRs of the first one are bound to
+        // the connection they were listed with
+        stubPullRequestListings();
+        GitHubSCMSource.setIncrementalPullRequestScan(true);
+
+        listPullRequests(github);
+        GitHub other = new GitHubBuilder()
+                .withEndpoint("http://localhost:" + githubApi.port())
+                .build();
+        Map<Integer, String> second = listPullRequests(other);
+
+        // Expected: both scans list all the open PRs
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(second.keySet()));
+        githubApi.verify(2, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("open")));
+        githubApi.verify(0, getRequestedFor(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("all")));
+    }
+
+    private void stubPullRequestListings() {
+        githubApi.stubFor(get(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("open"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("../PRs/_files/body-yolo-pulls-open-multiple-PRs.json")));
+        githubApi.stubFor(get(urlPathEqualTo("/repos/cloudbeers/yolo/pulls"))
+                .withQueryParam("state", equalTo("all"))
+                .withQueryParam("sort", equalTo("updated"))
+                .withQueryParam("direction", equalTo("desc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json; charset=utf-8")
+                        .withBodyFile("../PRs/_files/body-yolo-pulls-updated-since-last-scan.json")));
+    }
+
+    /** Lists the PRs as a full scan of {@link #source} does, returning the title of each PR by number. */
+    private Map<Integer, String> listPullRequests(GitHub gitHub) throws IOException {
+        GitHubSCMSourceContext context = new GitHubSCMSourceContext(null, SCMHeadObserver.collect());
+        context.wantOriginPRs(true);
+        Map<Integer, String> titles = new LinkedHashMap<>();
+        try (GitHubSCMSourceRequest request = context.newRequest(source, StreamTaskListener.fromStderr())) {
+            request.setGitHub(gitHub);
+            try (GitHubSCMSource.LazyPullRequests pullRequests = source.new LazyPullRequests(request, repo)) {
+                for (GHPullRequest pullRequest : pullRequests) {
+                    titles.put(pullRequest.getNumber(), pullRequest.getTitle());
+                }
+            }
+        }
+        return titles;
+    }
 }
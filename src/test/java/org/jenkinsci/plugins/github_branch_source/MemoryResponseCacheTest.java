@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+public class MemoryResponseCacheTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    @Test
+    public void repositoryDetailsAreServedFromMemory() throws Exception {
+        MemoryResponseCache cache = new MemoryResponseCache(Duration.ofMinutes(1), 10);
+        Interceptor.Chain chain = chain(get("https://api.github.com/repos/owner/repo"));
+
+        Response first = cache.intercept(chain);
+        Response second = cache.intercept(chain);
+
+        assertThat(first.body().string(), is("{\"id\":1}"));
+        assertThat(second.body().string(), is("{\"id\":1}"));
+        assertThat(second.header("ETag"), is("\"abc\""));
+        assertThat(second.header("X-RateLimit-Remaining"), nullValue());
+        verify(chain, times(1)).proceed(any());
+    }
+
+    @Test
+    public void otherRequestsAreNotCached() throws Exception {
+        MemoryResponseCache cache = new MemoryResponseCache(Duration.ofMinutes(1), 10);
+        Interceptor.Chain chain = chain(get("https://api.github.com/repos/owner/repo/pulls"));
+
+        cache.intercept(chain);
+        cache.intercept(chain);
+
+        verify(chain, times(2)).proceed(any());
+    }
+
+    @Test
+    public void theRateLimitIsNeverCached() throws Exception {
+        MemoryResponseCache cache = new MemoryResponseCache(Duration.ofMinutes(1), 10);
+        Interceptor.Chain chain = chain(get("https://api.github.com/rate_limit"));
+
+        cache.intercept(chain);
+        cache.intercept(chain);
+
+        verify(chain, times(2)).proceed(any());
+    }
+
+    @Test
+    public void updatesInvalidateTheCache() throws Exception {
+        MemoryResponseCache cache = new MemoryResponseCache(Duration.ofMinutes(1), 10);
+        Interceptor.Chain chain = chain(get("https://api.github.com/user"));
+
+        cache.intercept(chain);
+        cache.intercept(chain(new Request.Builder()
+                .url("https://api.github.com/repos/owner/repo/statuses/c0ffee")
+                .post(RequestBody.create("{}", JSON))
+                .build()));
+        cache.intercept(chain);
+
+        verify(chain, times(2)).proceed(any());
+    }
+
+    private static Request get(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    private static Interceptor.Chain chain(Request request) throws Exception {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .header("ETag", "\"abc\"")
+                .header("X-RateLimit-Remaining", "4999")
+                .body(ResponseBody.create("{\"id\":1}", JSON))
+                .build());
+        return chain;
+    }
+}
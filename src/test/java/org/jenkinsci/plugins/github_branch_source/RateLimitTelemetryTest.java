@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.github.GHRateLimit;
+
+public class RateLimitTelemetryTest {
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void samplesTheRateLimitAndTheRequestsOfEachJob() throws Exception {
+        String key = "telemetry-test";
+        RateLimitTelemetry.requested(key, ApiRateLimitChecker.Priority.BACKGROUND, "org/repo");
+        RateLimitTelemetry.requested(key, ApiRateLimitChecker.Priority.BACKGROUND, "org/repo");
+        RateLimitTelemetry.requested(key, ApiRateLimitChecker.Priority.NOTIFICATION, null);
+        RateLimitTelemetry.sample(key, "https://telemetry.test/api/v3", "scan-credentials", rateLimit(5000, 4997));
+        RateLimitTelemetry.requested(key, ApiRateLimitChecker.Priority.INTERACTIVE, null);
+        RateLimitTelemetry.sample(key, "https://telemetry.test/api/v3", "scan-credentials", rateLimit(5000, 4996));
+
+        RateLimitTelemetry.History history = j.jenkins
+                .getExtensionList(RateLimitTelemetry.class)
+                .get(0)
+                .getConnections()
+                .stream()
+                .filter(h -> h.getApiUrl().equals("https://telemetry.test/api/v3"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertThat(history.getCredentialsId(), is("scan-credentials"));
+        List<RateLimitTelemetry.Sample> samples = history.getSamples();
+        assertThat(samples.size(), is(2));
+        assertThat(samples.get(0).getRemaining(), is(4997));
+        // INTERACTIVE, NOTIFICATION, BACKGROUND
+        assertThat(samples.get(0).getRequests().get(2).getCount(), is(2L));
+        assertThat(samples.get(0).getRequests().get(1).getCount(), is(1L));
+        assertThat(samples.get(1).getRequests().get(0).getCount(), is(1L));
+        assertThat(samples.get(1).getRequests().get(2).getCount(), is(0L));
+        assertThat(history.getJobs().get(0).getName(), is("org/repo"));
+        assertThat(history.getJobs().get(0).getCount(), is(2L));
+        assertThat(history.getLatestSamples(1).get(0).getRemaining(), is(4996));
+
+        String json = j.createWebClient()
+                .goTo("manage/githubRateLimits/api/json?depth=2", "application/json")
+                .getWebResponse()
+                .getContentAsString();
+        assertThat(json, containsString("\"credentialsId\":\"scan-credentials\""));
+        assertThat(json, containsString("\"remaining\":4996"));
+    }
+
+    private static GHRateLimit.Record rateLimit(int limit, int remaining) {
+        GHRateLimit.Record rateLimit = mock(GHRateLimit.Record.class);
+        when(rateLimit.getLimit()).thenReturn(limit);
+        when(rateLimit.getRemaining()).thenReturn(remaining);
+        when(rateLimit.getResetDate()).thenReturn(new Date(System.currentTimeMillis() + 3600_000L));
+        return rateLimit;
+    }
+}
@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Item;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+
+public class RepositorySnapshotTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void reusesTheDetailsOfRepositoriesNotUpdatedSinceTheLastScan() throws Exception {
+        Item owner = mock(Item.class);
+        when(owner.getRootDir()).thenReturn(tmp.getRoot());
+        GHRepository unchanged = repository(1, 1000L);
+        when(unchanged.listTopics()).thenReturn(Arrays.asList("java", "jenkins"));
+        GHRepository updated = repository(2, 1000L);
+        when(updated.listTopics()).thenReturn(Arrays.asList("go"));
+
+        RepositorySnapshot first = RepositorySnapshot.load(owner, null, "CloudBeers");
+        assertThat(first.getTopics(unchanged), contains("java", "jenkins"));
+        assertThat(first.getTopics(updated), contains("go"));
+        first.save();
+
+        when(updated.getUpdatedAt()).thenReturn(new Date(2000L));
+        RepositorySnapshot second = RepositorySnapshot.load(owner, null, "cloudbeers");
+        assertThat(second.getTopics(unchanged), contains("java", "jenkins"));
+        assertThat(second.getTopics(updated), contains("go"));
+
+        verify(unchanged, times(1)).listTopics();
+        verify(updated, times(2)).listTopics();
+    }
+
+    @Test
+    public void fetchesTheDetailsOfRepositoriesChangedAccordingToWebhookEvents() throws Exception {
+        Item owner = mock(Item.class);
+        when(owner.getRootDir()).thenReturn(tmp.getRoot());
+        GHRepository edited = repository(3, 1000L);
+        when(edited.listTopics()).thenReturn(Arrays.asList("java"));
+
+        RepositorySnapshot first = RepositorySnapshot.load(owner, null, "cloudbeers");
+        assertThat(first.getTopics(edited), contains("java"));
+        first.save();
+
+        // the topics were edited, the listing of the next scan may not tell yet
+        when(edited.listTopics()).thenReturn(Arrays.asList("java", "jenkins"));
+        RepositorySnapshot.changed(3);
+        RepositorySnapshot second = RepositorySnapshot.load(owner, null, "cloudbeers");
+        assertThat(second.getTopics(edited), contains("java", "jenkins"));
+
+        verify(edited, times(2)).listTopics();
+    }
+
+    @Test
+    public void keepsTheSnapshotsOfEachEndpointInTheFolderOfTheirOwner() throws Exception {
+        File dir = tmp.newFolder("owner");
+        Item owner = mock(Item.class);
+        when(owner.getRootDir()).thenReturn(dir);
+        GHRepository repo = repository(4, 1000L);
+        when(repo.listTopics()).thenReturn(Arrays.asList("java"));
+
+        RepositorySnapshot github = RepositorySnapshot.load(owner, null, "../../cloudbeers");
+        assertThat(github.getTopics(repo), contains("java"));
+        github.save();
+
+        // the organization is free text, it does not choose where the snapshot goes
+        assertThat(dir.list(), arrayWithSize(1));
+        assertThat(tmp.getRoot().list(), arrayContaining("owner"));
+
+        // another server with an organization of the same name has a snapshot of its own
+        RepositorySnapshot enterprise = RepositorySnapshot.load(owner, "https://ghe.test/api/v3", "../../cloudbeers");
+        assertThat(enterprise.getTopics(repo), contains("java"));
+        verify(repo, times(2)).listTopics();
+    }
+
+    private static GHRepository repository(long id, long updatedAt) throws Exception {
+        GHRepository repo = mock(GHRepository.class);
+        when(repo.getId()).thenReturn(id);
+        when(repo.getUpdatedAt()).thenReturn(new Date(updatedAt));
+        return repo;
+    }
+}
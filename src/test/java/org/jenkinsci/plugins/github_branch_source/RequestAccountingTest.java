@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import java.io.IOException;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RequestAccountingTest {
+
+    @Rule
+    public WireMockRule api = new WireMockRule(wireMockConfig().dynamicPort());
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void classifiesRequestsByHowTheyWereAnswered() throws Exception {
+        api.stubFor(get(urlEqualTo("/fresh"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Cache-Control", "max-age=600")
+                        .withHeader("ETag", "\"fresh\"")
+                        .withBody("{}")));
+        api.stubFor(get(urlEqualTo("/stale"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Cache-Control", "no-cache")
+                        .withHeader("ETag", "\"stale\"")
+                        .withBody("{}")));
+        api.stubFor(get(urlEqualTo("/stale"))
+                .withHeader("If-None-Match", equalTo("\"stale\""))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(304).withHeader("ETag", "\"stale\"")));
+
+        RequestAccounting accounting = new RequestAccounting(null);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(new Cache(tmp.newFolder(), 1024L * 1024L))
+                .addInterceptor(accounting)
+                .addNetworkInterceptor(new RequestAccounting.Network())
+                .build();
+
+        fetch(client, "/fresh");
+        fetch(client, "/stale");
+        assertThat(accounting.getCount(RequestAccounting.Outcome.MISS), is(2L));
+
+        fetch(client, "/fresh");
+        assertThat(accounting.getCount(RequestAccounting.Outcome.HIT), is(1L));
+
+        fetch(client, "/stale");
+        assertThat(accounting.getCount(RequestAccounting.Outcome.REVALIDATED), is(1L));
+        assertThat(accounting.getCount(RequestAccounting.Outcome.MISS), is(2L));
+    }
+
+    private void fetch(OkHttpClient client, String path) throws IOException {
+        Request request = new Request.Builder().url("http://localhost:" + api.port() + path).build();
+        try (Response response = client.newCall(request).execute()) {
+            assertThat(response.body().string(), is("{}"));
+        }
+    }
+}
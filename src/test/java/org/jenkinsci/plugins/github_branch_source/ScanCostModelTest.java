@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+
+public class ScanCostModelTest {
+
+    @Test
+    public void scansLearnTheirCostIncludingNestedScans() {
+        GitHub gitHub = mock(GitHub.class);
+        String key = "https://scan-cost.test/api/v3::org";
+
+        // nothing is known about the first scan
+        assertThat(ScanCostModel.getExpectedCost(key), is(0L));
+        ScanCostModel.Scan first = new ScanCostModel.Scan(key, "org", gitHub, null);
+        ScanCostModel.Scan nested = new ScanCostModel.Scan(key + "/repo", "org/repo", gitHub, first);
+        for (int i = 0; i < 300; i++) {
+            nested.requested();
+        }
+        nested.close();
+        first.close();
+        assertThat(first.getRequests(), is(300L));
+        assertThat(ScanCostModel.getExpectedCost(key), is(300L));
+
+        // later scans are averaged in
+        ScanCostModel.Scan second = new ScanCostModel.Scan(key, "org", gitHub, null);
+        for (int i = 0; i < 100; i++) {
+            second.requested();
+        }
+        second.close();
+        assertThat(ScanCostModel.getExpectedCost(key), is(200L));
+    }
+
+    @Test
+    public void scansWaitUntilTheQuotaCoversTheirExpectedCost() {
+        // 400 remaining less the buffer of 250 does not cover 300 requests
+        assertThat(ScanCostModel.isCovered(300, rateLimit(5000, 400), 0), is(false));
+        assertThat(ScanCostModel.isCovered(300, rateLimit(5000, 5000), 0), is(true));
+        // the scans in progress come first
+        assertThat(ScanCostModel.isCovered(300, rateLimit(5000, 1000), 0), is(true));
+        assertThat(ScanCostModel.isCovered(300, rateLimit(5000, 1000), 500), is(false));
+        // a scan larger than half of the quota starts once the quota is renewed
+        assertThat(ScanCostModel.isCovered(10000, rateLimit(5000, 5000), 0), is(true));
+        assertThat(ScanCostModel.isCovered(10000, rateLimit(5000, 2000), 0), is(false));
+    }
+
+    private static GHRateLimit.Record rateLimit(int limit, int remaining) {
+        GHRateLimit.Record core = mock(GHRateLimit.Record.class);
+        when(core.getLimit()).thenReturn(limit);
+        when(core.getRemaining()).thenReturn(remaining);
+        return core;
+    }
+}
@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+
+public class ScanCredentialsPoolTraitTest extends AbstractGitHubWireMockTest {
+
+    @Test
+    public void blankCredentialsIdsAreIgnored() {
+        ScanCredentialsPoolTrait trait = new ScanCredentialsPoolTrait(Arrays.asList(
+                new ScanCredentialsPoolTrait.Entry(" first "),
+                new ScanCredentialsPoolTrait.Entry(""),
+                new ScanCredentialsPoolTrait.Entry(null),
+                new ScanCredentialsPoolTrait.Entry("third")));
+        assertThat(trait.getCredentialsIdList(), contains("first", "third"));
+    }
+
+    @Test
+    public void missingCredentialsAreReportedInTheScanLog() throws Exception {
+        StandardCredentials pooled = new UsernamePasswordCredentialsImpl(
+                CredentialsScope.GLOBAL, "pooled", null, "pooled-user", "pooled-secret");
+        SystemCredentialsProvider.getInstance()
+                .setDomainCredentialsMap(Collections.singletonMap(Domain.global(), Collections.singletonList(pooled)));
+        ScanCredentialsPoolTrait trait = new ScanCredentialsPoolTrait(Arrays.asList(
+                new ScanCredentialsPoolTrait.Entry("pooled"), new ScanCredentialsPoolTrait.Entry("missing")));
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        List<StandardCredentials> credentials = ScanCredentialsPoolTrait.lookupCredentials(
+                Collections.singletonList(trait),
+                null,
+                "http://localhost:" + githubApi.port(),
+                "cloudbeers",
+                new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        assertThat(credentials, contains(pooled));
+        assertThat(log.toString("UTF-8"), containsString("Pooled scan credentials missing not found"));
+    }
+
+    @Test
+    public void scansUseTheCredentialsWithTheMostRemainingQuota() throws Exception {
+        String apiUrl = "http://localhost:" + githubApi.port();
+        StandardCredentials scan = new UsernamePasswordCredentialsImpl(
+                CredentialsScope.GLOBAL, "scan", null, "scan-user", "scan-secret");
+        StandardCredentials pooled = new UsernamePasswordCredentialsImpl(
+                CredentialsScope.GLOBAL, "pooled", null, "pooled-user", "pooled-secret");
+
+        assertThat(Connector.selectScanCredentials(apiUrl, scan, Collections.emptyList()), sameInstance(scan));
+
+        GitHub gitHub = Connector.connect(apiUrl, scan);
+        try {
+            // the scan credentials have used some of their quota, the pooled ones none yet
+            gitHub.getRateLimit();
+        } finally {
+            Connector.release(gitHub);
+        }
+        assertThat(
+                Connector.selectScanCredentials(apiUrl, scan, Collections.singletonList(pooled)),
+                sameInstance(pooled));
+    }
+
+    @Test
+    public void anonymousScansUseThePooledCredentials() throws Exception {
+        String apiUrl = "http://localhost:" + githubApi.port();
+        StandardCredentials pooled = new UsernamePasswordCredentialsImpl(
+                CredentialsScope.GLOBAL, "pooled", null, "pooled-user", "pooled-secret");
+
+        // neither has used any quota yet, anonymous access is still never selected
+        assertThat(
+                Connector.selectScanCredentials(apiUrl, null, Collections.singletonList(pooled)),
+                sameInstance(pooled));
+    }
+}
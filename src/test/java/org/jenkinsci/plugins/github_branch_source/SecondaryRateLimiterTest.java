@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SecondaryRateLimiterTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    @Test
+    public void recognizesSecondaryRateLimits() throws Exception {
+        assertThat(SecondaryRateLimiter.getSecondaryLimitDelay(response(403, "2", "10", "{}")), is(2000L));
+        assertThat(
+                SecondaryRateLimiter.getSecondaryLimitDelay(response(
+                        403, null, "10", "{\"message\":\"You have exceeded a secondary rate limit.\"}")),
+                is(0L));
+        assertThat(SecondaryRateLimiter.getSecondaryLimitDelay(response(429, null, null, "{}")), is(0L));
+        // the primary rate limit
+        assertThat(SecondaryRateLimiter.getSecondaryLimitDelay(response(403, "2", "0", "{}")), is(-1L));
+        // a permission problem
+        assertThat(
+                SecondaryRateLimiter.getSecondaryLimitDelay(
+                        response(403, null, "10", "{\"message\":\"Resource not accessible by integration\"}")),
+                is(-1L));
+        assertThat(SecondaryRateLimiter.getSecondaryLimitDelay(response(200, null, "10", "{}")), is(-1L));
+    }
+
+    @Test
+    public void honorsRetryAfterAndAdaptsTheConcurrencyLimit() throws Exception {
+        SecondaryRateLimiter limiter = new SecondaryRateLimiter("https://limiter.test/api/v3", 8);
+        Interceptor.Chain chain = chain(response(403, "1", "10", "{}"), response(200, null, "10", "{}"));
+
+        limiter.intercept(chain);
+        assertThat(limiter.getSecondaryLimitCount(), is(1L));
+        assertThat(limiter.getRetryAfterCount(), is(1L));
+        // halved from the one request in flight
+        assertThat(limiter.getLimit(), is(1));
+
+        long start = System.currentTimeMillis();
+        limiter.intercept(chain);
+        assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(900L));
+        assertThat(limiter.getDelayedCount(), is(1L));
+        // raised again after as many successes as the limit
+        assertThat(limiter.getLimit(), is(2));
+        assertThat(limiter.getIncreaseCount(), is(1L));
+    }
+
+    @Test
+    public void spacesContentCreationAfterALimit() throws Exception {
+        SecondaryRateLimiter limiter = new SecondaryRateLimiter("https://limiter.test/api/v3", null);
+        Request post = new Request.Builder()
+                .url("https://limiter.test/api/v3/repos/owner/repo/statuses/abc")
+                .post(RequestBody.create("{}", JSON))
+                .build();
+        Interceptor.Chain posts = chain(
+                post,
+                response(429, "1", "10", "{}"),
+                response(201, null, "10", "{}"),
+                response(201, null, "10", "{}"));
+        Interceptor.Chain gets = chain(response(200, null, "10", "{}"));
+
+        // content is created as fast as it is asked for until a limit is hit
+        assertThat(limiter.getCreationInterval(), is(0L));
+        limiter.intercept(posts);
+        assertThat(limiter.getCreationInterval(), is(1000L));
+
+        limiter.intercept(posts);
+        // each success shortens the interval
+        assertThat(limiter.getCreationInterval(), is(950L));
+        // reads are not spaced
+        long start = System.currentTimeMillis();
+        limiter.intercept(gets);
+        assertThat(System.currentTimeMillis() - start, lessThan(500L));
+
+        limiter.intercept(posts);
+        assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(900L));
+        assertThat(limiter.getCreationInterval(), is(900L));
+    }
+
+    private static Response response(int code, String retryAfter, String remaining, String body) {
+        Request request = new Request.Builder()
+                .url("https://limiter.test/api/v3/repos/owner/repo")
+                .build();
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code < 400 ? "OK" : "Forbidden")
+                .body(ResponseBody.create(body, JSON));
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        if (remaining != null) {
+            builder.header("X-RateLimit-Remaining", remaining);
+        }
+        return builder.build();
+    }
+
+    private static Interceptor.Chain chain(Response... responses) throws Exception {
+        return chain(responses[0].request(), responses);
+    }
+
+    private static Interceptor.Chain chain(Request request, Response... responses) throws Exception {
+        Deque<Response> queue = new ArrayDeque<>(Arrays.asList(responses));
+        Interceptor.Chain chain = Mockito.mock(Interceptor.Chain.class);
+        Mockito.when(chain.request()).thenReturn(request);
+        Mockito.when(chain.proceed(Mockito.any())).thenAnswer(invocation -> queue.removeFirst());
+        return chain;
+    }
+}
@@ -0,0 +1,86 @@
+package org.jenkinsci.plugins.github_branch_source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+public class SharedResponseCacheTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    @Test
+    public void publicResponsesAreSharedAfterRevalidation() throws Exception {
+        SharedResponseCache cache = SharedResponseCache.forApiUrl("https://shared-public.test/api/v3", 1024 * 1024);
+        Request request = get("https://shared-public.test/api/v3/repos/owner/repo/branches");
+        List<Request> sent = new ArrayList<>();
+
+        Response first = cache.intercept(chain(request, sent, "public, max-age=60"));
+        assertThat(first.header("Cache-Control"), is("no-store"));
+
+        Response second = cache.intercept(chain(request, sent, "public, max-age=60"));
+        assertThat(second.code(), is(200));
+        assertThat(second.body().string(), is("[]"));
+        assertThat(second.header("X-RateLimit-Remaining"), is("4998"));
+        assertThat(sent.get(0).header("If-None-Match"), nullValue());
+        assertThat(sent.get(1).header("If-None-Match"), is("\"abc\""));
+    }
+
+    @Test
+    public void privateResponsesAreNotShared() throws Exception {
+        SharedResponseCache cache = SharedResponseCache.forApiUrl("https://shared-private.test/api/v3", 1024 * 1024);
+        Request request = get("https://shared-private.test/api/v3/repos/owner/repo/branches");
+        List<Request> sent = new ArrayList<>();
+
+        Response first = cache.intercept(chain(request, sent, "private, max-age=60"));
+        assertThat(first.header("Cache-Control"), is("private, max-age=60"));
+
+        cache.intercept(chain(request, sent, "private, max-age=60"));
+        assertThat(sent.get(1).header("If-None-Match"), nullValue());
+    }
+
+    private static Request get(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    /** A chain answering the first request with a body and the conditional ones with 304. */
+    private static Interceptor.Chain chain(Request request, List<Request> sent, String cacheControl)
+            throws Exception {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> {
+            Request actual = invocation.getArgument(0);
+            sent.add(actual);
+            Response.Builder response = new Response.Builder()
+                    .request(actual)
+                    .protocol(Protocol.HTTP_1_1)
+                    .header("ETag", "\"abc\"")
+                    .header("Cache-Control", cacheControl);
+            if (actual.header("If-None-Match") != null) {
+                return response.code(304)
+                        .message("Not Modified")
+                        .header("X-RateLimit-Remaining", "4998")
+                        .body(ResponseBody.create(new byte[0], null))
+                        .build();
+            }
+            return response.code(200)
+                    .message("OK")
+                    .header("X-RateLimit-Remaining", "4999")
+                    .body(ResponseBody.create("[]", JSON))
+                    .build();
+        });
+        return chain;
+    }
+}